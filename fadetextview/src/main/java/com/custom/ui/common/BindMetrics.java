@@ -0,0 +1,132 @@
+package com.custom.ui.common;
+
+import android.support.v4.util.SparseArrayCompat;
+
+/**
+ * {@link RecyclerViewAdapter}按视图类型统计的创建和绑定耗时，每种类型第一次出现时分配一次，之后记录不创建任何对象
+ * <p>
+ * 通过{@link RecyclerViewAdapter#setBindMetricsEnabled}开启，只统计UI线程上的创建和数据Item的绑定，
+ * HeaderView、FooterView和{@link ViewHolderPool}在后台的创建不统计。
+ * 读取请使用{@link #snapshot}取得副本，所有方法都在UI线程调用
+ */
+
+public final class BindMetrics {
+
+    /**
+     * 视图类型 <----> 这种类型的统计
+     */
+    private final SparseArrayCompat<TypeMetrics> mTypes = new SparseArrayCompat<>();
+
+    /**
+     * 一种视图类型的统计
+     */
+    public static final class TypeMetrics {
+
+        private final int mViewType;
+        private final DurationHistogram mInflateTimes = new DurationHistogram();
+        private final DurationHistogram mBindTimes = new DurationHistogram();
+        private int mSlowBindCount;
+
+        TypeMetrics(int viewType) {
+            this.mViewType = viewType;
+        }
+
+        public int getViewType() {
+            return mViewType;
+        }
+
+        /**
+         * 在UI线程创建ViewHolder(加载布局)的耗时
+         */
+        public DurationHistogram getInflateTimes() {
+            return mInflateTimes;
+        }
+
+        /**
+         * 绑定的耗时，次数就是绑定的次数
+         */
+        public DurationHistogram getBindTimes() {
+            return mBindTimes;
+        }
+
+        public int getBindCount() {
+            return mBindTimes.getCount();
+        }
+
+        /**
+         * 超过{@link RecyclerViewAdapter#setOnSlowBindListener}设置的阈值的绑定次数
+         */
+        public int getSlowBindCount() {
+            return mSlowBindCount;
+        }
+    }
+
+    void recordInflate(int viewType, long nanos) {
+        getTypeMetrics(viewType).mInflateTimes.record(nanos);
+    }
+
+    void recordBind(int viewType, long nanos, boolean slow) {
+        TypeMetrics metrics = getTypeMetrics(viewType);
+        metrics.mBindTimes.record(nanos);
+        if (slow) {
+            metrics.mSlowBindCount++;
+        }
+    }
+
+    private TypeMetrics getTypeMetrics(int viewType) {
+        TypeMetrics metrics = mTypes.get(viewType);
+        if (metrics == null) {
+            metrics = new TypeMetrics(viewType);
+            mTypes.put(viewType, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * 统计过的视图类型的个数
+     */
+    public int getViewTypeCount() {
+        return mTypes.size();
+    }
+
+    /**
+     * 按视图类型从小到大取得
+     */
+    public TypeMetrics getTypeMetricsAt(int index) {
+        return mTypes.valueAt(index);
+    }
+
+    /**
+     * @return 这种视图类型的统计，没有记录过时为null
+     */
+    public TypeMetrics getTypeMetricsFor(int viewType) {
+        return mTypes.get(viewType);
+    }
+
+    /**
+     * 复制当前的统计，之后的记录不影响副本
+     */
+    public BindMetrics snapshot() {
+        BindMetrics snapshot = new BindMetrics();
+        for (int i = 0; i < mTypes.size(); i++) {
+            TypeMetrics metrics = mTypes.valueAt(i);
+            TypeMetrics copy = snapshot.getTypeMetrics(metrics.mViewType);
+            copy.mInflateTimes.copyFrom(metrics.mInflateTimes);
+            copy.mBindTimes.copyFrom(metrics.mBindTimes);
+            copy.mSlowBindCount = metrics.mSlowBindCount;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 清空所有统计，已经分配的直方图保留重复使用
+     */
+    public void reset() {
+        for (int i = 0; i < mTypes.size(); i++) {
+            TypeMetrics metrics = mTypes.valueAt(i);
+            metrics.mInflateTimes.reset();
+            metrics.mBindTimes.reset();
+            metrics.mSlowBindCount = 0;
+        }
+    }
+}
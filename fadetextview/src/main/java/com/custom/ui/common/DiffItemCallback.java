@@ -0,0 +1,43 @@
+package com.custom.ui.common;
+
+/**
+ * 判断两个数据项是否相同，{@link RecyclerViewAdapter#setData}据此在后台计算新旧数据的差异，
+ * 只刷新真正变化的Item
+ * <p>
+ * 方法在后台线程调用，实现中不要访问View或者修改数据
+ *
+ * @param <T> 数据类型
+ */
+
+public abstract class DiffItemCallback<T> {
+
+    /**
+     * 是否是同一个数据项，一般比较ID
+     *
+     * @param oldItem 旧数据中的项
+     * @param newItem 新数据中的项
+     * @return true 是同一项，位置变化时会作为移动处理 / false 不同的项
+     */
+    public abstract boolean areItemsTheSame(T oldItem, T newItem);
+
+    /**
+     * 同一个数据项的内容是否相同，只在{@link #areItemsTheSame}返回true时调用
+     *
+     * @param oldItem 旧数据中的项
+     * @param newItem 新数据中的项
+     * @return true 内容相同，不需要重新绑定 / false 内容变化，需要重新绑定
+     */
+    public abstract boolean areContentsTheSame(T oldItem, T newItem);
+
+    /**
+     * 内容变化时交给{@link android.support.v7.widget.RecyclerView.Adapter#notifyItemChanged(int, Object)}的payload，
+     * 默认返回null，整个Item重新绑定
+     *
+     * @param oldItem 旧数据中的项
+     * @param newItem 新数据中的项
+     * @return 变化的部分
+     */
+    public Object getChangePayload(T oldItem, T newItem) {
+        return null;
+    }
+}
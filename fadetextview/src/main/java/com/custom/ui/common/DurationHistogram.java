@@ -0,0 +1,113 @@
+package com.custom.ui.common;
+
+/**
+ * 耗时的直方图，按微秒的2的幂分桶，桶在创建时一次分配好，记录时只修改计数，可以在线上一直开启
+ * <p>
+ * 第0个桶记录不到1微秒的耗时，第i个桶记录[2^(i-1), 2^i)微秒的耗时，超过最后一个桶上限的都记在最后一个桶
+ */
+
+public final class DurationHistogram {
+
+    /**
+     * 最后一个桶从2^22微秒(约4秒)开始
+     */
+    public static final int BUCKET_COUNT = 24;
+
+    private final int[] mBuckets = new int[BUCKET_COUNT];
+    private int mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时，单位纳秒
+     */
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mBuckets[getBucketIndex(nanos)]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+    }
+
+    static int getBucketIndex(long nanos) {
+        long micros = nanos / 1000;
+        int index = 64 - Long.numberOfLeadingZeros(micros);
+        return index < BUCKET_COUNT ? index : BUCKET_COUNT - 1;
+    }
+
+    /**
+     * 一个桶的上限，单位纳秒
+     */
+    public static long getBucketUpperBoundNanos(int index) {
+        return (1L << index) * 1000;
+    }
+
+    void copyFrom(DurationHistogram other) {
+        System.arraycopy(other.mBuckets, 0, mBuckets, 0, BUCKET_COUNT);
+        mCount = other.mCount;
+        mTotalNanos = other.mTotalNanos;
+        mMaxNanos = other.mMaxNanos;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets[i] = 0;
+        }
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    /**
+     * 记录的次数
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getBucketCount(int index) {
+        return mBuckets[index];
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    public long getAverageNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    /**
+     * 估算的百分位耗时，取所在桶的上限，不超过最大耗时
+     *
+     * @param percentile 0到100
+     * @return 耗时，单位纳秒，没有记录时为0
+     */
+    public long getPercentileNanos(float percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(mCount * Math.max(0, Math.min(percentile, 100)) / 100);
+        if (target == 0) {
+            target = 1;
+        }
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mBuckets[i];
+            if (count >= target) {
+                return Math.min(getBucketUpperBoundNanos(i), mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+}
@@ -0,0 +1,20 @@
+package com.custom.ui.common;
+
+/**
+ * 从数据中取出唯一的键，作为{@link RecyclerViewAdapter}的稳定ID
+ * <p>
+ * 同一项数据在整个生命周期中必须返回同一个键，不同的数据项返回不同的键，
+ * 不要使用{@link android.support.v7.widget.RecyclerView#NO_ID}。
+ * HeaderView、FooterView和分页数据的占位使用从Long.MIN_VALUE开始的ID，数据的键不要落在这个范围
+ *
+ * @param <T> 数据类型
+ */
+
+public abstract class ItemKeyExtractor<T> {
+
+    /**
+     * @param data 数据项
+     * @return 数据项唯一的键，一般是数据的ID
+     */
+    public abstract long getKey(T data);
+}
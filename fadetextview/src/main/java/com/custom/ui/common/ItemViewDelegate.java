@@ -0,0 +1,37 @@
+package com.custom.ui.common;
+
+import java.util.List;
+
+/**
+ * 一种Item的布局和绑定方法，注册到{@link RecyclerViewAdapter}后，对应类型的数据使用它创建和绑定，
+ * 不同类型的Item分别复用
+ *
+ * @param <T> 这种Item的数据类型
+ */
+
+public abstract class ItemViewDelegate<T> {
+
+    /**
+     * @return 这种Item的布局ID
+     */
+    public abstract int getLayoutId();
+
+    /**
+     * 将视图与数据进行绑定
+     *
+     * @param holder ViewHolder视图掌控器
+     * @param data   当前需要绑定的数据
+     */
+    public abstract void onBind(ViewHolder holder, T data);
+
+    /**
+     * 只有部分内容变化时的绑定，见{@link RecyclerViewAdapter#onBind(ViewHolder, Object, List)}，默认完整绑定
+     *
+     * @param holder   ViewHolder视图掌控器
+     * @param data     当前需要绑定的数据
+     * @param payloads 变化的部分，不为空
+     */
+    public void onBind(ViewHolder holder, T data, List<Object> payloads) {
+        onBind(holder, data);
+    }
+}
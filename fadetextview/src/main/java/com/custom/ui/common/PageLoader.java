@@ -0,0 +1,39 @@
+package com.custom.ui.common;
+
+import java.util.List;
+
+/**
+ * 分页加载数据，{@link PagedData}在后台线程调用，实现中可以直接读取数据库或者文件
+ *
+ * @param <T> 数据类型
+ */
+
+public abstract class PageLoader<T> {
+
+    /**
+     * 数据的总条数，在加载任何一页之前调用一次
+     *
+     * @return 总条数
+     */
+    public abstract int loadCount();
+
+    /**
+     * 加载一页数据
+     *
+     * @param start 第一条数据的位置
+     * @param count 需要的条数，最后一页可能少于页大小
+     * @return 加载到的数据，加载失败时返回null，之后绑定到这一页时会重新加载
+     */
+    public abstract List<T> loadPage(int start, int count);
+
+    /**
+     * 一条数据在缓存中占用的大小，单位与{@link PagedData#setMaxCacheSize}一致，
+     * 默认每条数据算作1，缓存上限就是缓存的条数
+     *
+     * @param data 一条已经加载的数据
+     * @return 占用的大小
+     */
+    public int sizeOf(T data) {
+        return 1;
+    }
+}
@@ -0,0 +1,332 @@
+package com.custom.ui.common;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 按页加载的数据，交给{@link RecyclerViewAdapter#setPagedData}后代替全部加载到内存中的列表
+ * <p>
+ * 先在后台取得总条数，之后只加载绑定到的页；绑定位置距离页的边缘不超过预加载距离时提前加载相邻的页，
+ * 还没有加载的位置返回null作为占位。已加载的页按最近使用的顺序缓存，超过缓存上限时最久没有用到的页被丢弃，
+ * 之后再绑定到时重新加载。所有方法都在UI线程调用
+ *
+ * @param <T> 数据类型
+ */
+
+public final class PagedData<T> {
+
+    private final PageLoader<T> mLoader;
+    private final int mPageSize;
+
+    /**
+     * 绑定位置距离页的边缘不超过这个距离时加载相邻的页
+     */
+    private int mPrefetchDistance;
+
+    /**
+     * 缓存上限，单位见{@link PageLoader#sizeOf}
+     */
+    private int mMaxCacheSize;
+    private int mCacheSize;
+
+    private int mCount;
+
+    /**
+     * 下标为页号，总条数确定后创建一次
+     */
+    private Page<T>[] mPages;
+    private boolean[] mLoading;
+
+    /**
+     * 最近使用的页在前面
+     */
+    private Page<T> mHead;
+    private Page<T> mTail;
+
+    private Executor mBackgroundExecutor;
+    private Executor mMainExecutor;
+    private ListUpdateCallback mCallback;
+
+    /**
+     * 每次绑定或解除绑定加一，之前发出的加载结果直接丢弃
+     */
+    private volatile int mGeneration;
+
+    private int mLoadCount;
+    private int mEvictionCount;
+
+    /**
+     * @param loader   加载数据的方法
+     * @param pageSize 每页的条数
+     */
+    public PagedData(PageLoader<T> loader, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.mLoader = loader;
+        this.mPageSize = pageSize;
+        this.mPrefetchDistance = pageSize / 2;
+        this.mMaxCacheSize = pageSize * 10;
+    }
+
+    /**
+     * 设置预加载距离，默认半页
+     *
+     * @param distance 绑定位置距离页的边缘不超过这个条数时加载相邻的页，0表示不预加载
+     */
+    public void setPrefetchDistance(int distance) {
+        mPrefetchDistance = Math.max(0, distance);
+    }
+
+    /**
+     * 设置缓存上限，默认10页的条数。正在显示的页也可能被丢弃，上限至少要能放下一屏加上预加载的页
+     *
+     * @param maxSize 缓存上限，单位见{@link PageLoader#sizeOf}
+     */
+    public void setMaxCacheSize(int maxSize) {
+        mMaxCacheSize = maxSize;
+        evict(null);
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * 总条数，还没有取得时为0
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * 取得一条数据，所在的页没有加载时开始加载
+     *
+     * @param index 数据的位置
+     * @return 数据，还没有加载时返回null
+     */
+    public T get(int index) {
+        if (mPages == null) {
+            return null;
+        }
+        int page = index / mPageSize;
+        Page<T> loaded = mPages[page];
+        if (loaded == null) {
+            loadPage(page);
+            return null;
+        }
+        moveToHead(loaded);
+        int offset = index - page * mPageSize;
+        return offset < loaded.items.size() ? loaded.items.get(offset) : null;
+    }
+
+    /**
+     * 绑定到某个位置时调用，靠近页的边缘时加载相邻的页
+     *
+     * @param index 绑定的位置
+     */
+    void onBind(int index) {
+        if (mPrefetchDistance == 0 || index < 0 || index >= mCount) {
+            return;
+        }
+        int page = index / mPageSize;
+        int offset = index - page * mPageSize;
+        if (offset < mPrefetchDistance && page > 0) {
+            loadPage(page - 1);
+        }
+        if (mPageSize - offset <= mPrefetchDistance && page + 1 < mPages.length) {
+            loadPage(page + 1);
+        }
+    }
+
+    /**
+     * 是否已经加载过这一条数据并且还在缓存中
+     */
+    public boolean isLoaded(int index) {
+        return mPages != null && mPages[index / mPageSize] != null;
+    }
+
+    /**
+     * 当前缓存占用的大小
+     */
+    public int getCacheSize() {
+        return mCacheSize;
+    }
+
+    /**
+     * 加载完成的页数
+     */
+    public int getLoadCount() {
+        return mLoadCount;
+    }
+
+    /**
+     * 因为超过缓存上限而丢弃的页数
+     */
+    public int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * 开始使用，在后台取得总条数，取得后通知插入全部位置
+     *
+     * @param background 加载数据的线程
+     * @param main       UI线程
+     * @param callback   数据中的位置变化时通知
+     */
+    void attach(Executor background, Executor main, ListUpdateCallback callback) {
+        mBackgroundExecutor = background;
+        mMainExecutor = main;
+        mCallback = callback;
+        final int generation = ++mGeneration;
+        mBackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                final int count = mLoader.loadCount();
+                mMainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onCountLoaded(generation, count);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 不再使用，正在加载的结果会被丢弃，缓存清空
+     */
+    void detach() {
+        mGeneration++;
+        mCallback = null;
+        mCount = 0;
+        mPages = null;
+        mLoading = null;
+        mHead = null;
+        mTail = null;
+        mCacheSize = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onCountLoaded(int generation, int count) {
+        if (generation != mGeneration) {
+            return;
+        }
+        int pageCount = (count + mPageSize - 1) / mPageSize;
+        mPages = new Page[pageCount];
+        mLoading = new boolean[pageCount];
+        mCount = count;
+        if (count > 0) {
+            mCallback.onInserted(0, count);
+        }
+    }
+
+    private void loadPage(final int page) {
+        if (mLoading[page] || mPages[page] != null) {
+            return;
+        }
+        mLoading[page] = true;
+        final int generation = mGeneration;
+        final int start = page * mPageSize;
+        final int count = Math.min(mPageSize, mCount - start);
+        mBackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                final List<T> items = mLoader.loadPage(start, count);
+                mMainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, items);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int page, List<T> items) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mLoading[page] = false;
+        if (items == null) {
+            return;
+        }
+        Page<T> loaded = new Page<>(page, items);
+        for (int i = 0; i < items.size(); i++) {
+            loaded.size += mLoader.sizeOf(items.get(i));
+        }
+        mPages[page] = loaded;
+        mCacheSize += loaded.size;
+        mLoadCount++;
+        moveToHead(loaded);
+        evict(loaded);
+
+        int start = page * mPageSize;
+        mCallback.onChanged(start, Math.min(mPageSize, mCount - start), null);
+    }
+
+    /**
+     * 丢弃最久没有用到的页直到不超过缓存上限，刚加载的页保留
+     */
+    private void evict(Page<T> keep) {
+        while (mCacheSize > mMaxCacheSize && mTail != null && mTail != keep) {
+            Page<T> page = mTail;
+            unlink(page);
+            mPages[page.number] = null;
+            mCacheSize -= page.size;
+            mEvictionCount++;
+        }
+    }
+
+    private void moveToHead(Page<T> page) {
+        if (mHead == page) {
+            return;
+        }
+        unlink(page);
+        page.next = mHead;
+        if (mHead != null) {
+            mHead.prev = page;
+        }
+        mHead = page;
+        if (mTail == null) {
+            mTail = page;
+        }
+    }
+
+    private void unlink(Page<T> page) {
+        if (page.prev != null) {
+            page.prev.next = page.next;
+        } else if (mHead == page) {
+            mHead = page.next;
+        }
+        if (page.next != null) {
+            page.next.prev = page.prev;
+        } else if (mTail == page) {
+            mTail = page.prev;
+        }
+        page.prev = null;
+        page.next = null;
+    }
+
+    private static final class Page<T> {
+
+        final int number;
+        final List<T> items;
+        int size;
+        Page<T> prev;
+        Page<T> next;
+
+        Page(int number, List<T> items) {
+            this.number = number;
+            this.items = items;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.custom.ui.common;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.util.SparseArrayCompat;
+import android.support.v7.util.BatchingListUpdateCallback;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.StaggeredGridLayoutManager;
@@ -14,7 +20,14 @@ import android.view.ViewGroup;
 import com.custom.ui.textview.R;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHolder> {
@@ -24,6 +37,58 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
     private static final int BASE_ITEM_TYPE_HEADER = Integer.MIN_VALUE;
     private static final int BASE_ITEM_TYPE_FOOTER = Integer.MAX_VALUE;
 
+    /**
+     * HeaderView和FooterView的ID从这里开始，加上类型与{@link #BASE_ITEM_TYPE_HEADER}的差，不会与RecyclerView.NO_ID重复
+     */
+    private static final long BASE_ITEM_ID_HEADER_FOOTER = Long.MIN_VALUE;
+
+    /**
+     * 分页数据还没有加载的占位的ID从这里开始，加上数据中的位置，排在所有HeaderView和FooterView的ID后面
+     */
+    private static final long BASE_ITEM_ID_PLACEHOLDER = BASE_ITEM_ID_HEADER_FOOTER + (1L << 32);
+
+    /**
+     * 默认超过一帧的时间算作慢绑定
+     */
+    private static final long DEFAULT_SLOW_BIND_THRESHOLD_MILLIS = 16;
+
+    /**
+     * 后台计算差异和加载分页的线程空闲多久后回收
+     */
+    private static final long BACKGROUND_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * 所有Adapter共用的计算差异和加载分页的线程，第一次使用时创建
+     */
+    private static ThreadPoolExecutor sBackgroundExecutor;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static final Executor MAIN_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            sMainHandler.post(command);
+        }
+    };
+
+    private static final ListUpdateCallback IGNORE_UPDATES = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+        }
+    };
+
     /**
      * Map : int(HeaderView的类型) <----> view(所对应的HeaderView)
      */
@@ -41,13 +106,131 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
     private Context mContext;
     private LayoutInflater mInflater;
 
+    /**
+     * 在后台提前创建ViewHolder时使用，LayoutInflater不能在两个线程同时使用
+     */
+    private LayoutInflater mBackgroundInflater;
+
+    /**
+     * 统计在UI线程创建的次数
+     */
+    private ViewHolderPool mViewHolderPool;
+
+    /**
+     * 注册的所有ItemViewDelegate，下标就是它的视图类型
+     */
+    private final ArrayList<DelegateEntry<T>> mDelegates = new ArrayList<>();
+
+    /**
+     * 数据的类 <----> 对应的ItemViewDelegate，父类注册的也会在第一次用到时加进来
+     */
+    private final HashMap<Class<?>, DelegateEntry<T>> mClassDelegates = new HashMap<>();
+
+    /**
+     * {@link #getItemTypeKey}返回的键 <----> 对应的ItemViewDelegate
+     */
+    private final SparseArrayCompat<DelegateEntry<T>> mKeyDelegates = new SparseArrayCompat<>();
+
+    /**
+     * 不为null时使用分页数据，代替{@link #mData}
+     */
+    private PagedData<T> mPagedData;
+
+    /**
+     * 不为null时使用稳定ID
+     */
+    private ItemKeyExtractor<T> mKeyExtractor;
+
+    /**
+     * 不为null时setData在后台计算差异，只通知变化的Item
+     */
+    private DiffItemCallback<T> mDiffCallback;
+
+    /**
+     * 计算差异的线程，默认使用共用的后台线程
+     */
+    private Executor mDiffExecutor;
+
+    /**
+     * 每次设置数据加一，后台算完时已经不是最新的结果直接丢弃
+     */
+    private volatile int mDataGeneration;
+
+    /**
+     * 正在后台计算差异的新数据，算完之前为最新提交的数据
+     */
+    private List<T> mPendingData;
+
+    /**
+     * 把数据中的位置加上HeaderView的数量后通知RecyclerView
+     */
+    private final ListUpdateCallback mDataUpdateCallback = new DataUpdateCallback();
+
+    /**
+     * 批量修改的层数，大于0时修改的是{@link #mBatchData}
+     */
+    private int mBatchDepth;
+
+    /**
+     * 批量修改期间的数据副本，结束时替换数据
+     */
+    private List<T> mBatchData;
+
+    /**
+     * 合并相邻的同类修改，合并后的通知先记录下来，数据生效时再发出
+     */
+    private final UpdateRecorder mBatchRecorder = new UpdateRecorder();
+    private final BatchingListUpdateCallback mBatchingCallback = new BatchingListUpdateCallback(mBatchRecorder);
+
+    private boolean isFrameBatching = false;
+    private boolean isFrameBatchPosted = false;
+
+    private final Runnable mEndFrameBatch = new Runnable() {
+        @Override
+        public void run() {
+            isFrameBatchPosted = false;
+            endBatchUpdate();
+        }
+    };
+
 
     /**
      * Item的点击事件
      */
     private OnItemClickListener<T> mOnItemClickListener;
 
-    private OnItemClick mOnItemClick;
+    /**
+     * Item的长按事件
+     */
+    private OnItemLongClickListener<T> mOnItemLongClickListener;
+
+    /**
+     * Item中子View的点击事件和需要响应点击的子View的ID
+     */
+    private OnItemChildClickListener<T> mOnItemChildClickListener;
+    private int[] mChildClickViewIds;
+
+    /**
+     * 所有ViewHolder共用一个，点击时再找到对应的位置
+     */
+    private final OnItemClick mOnItemClick = new OnItemClick();
+
+    /**
+     * 不为null时统计创建和绑定的耗时
+     */
+    private BindMetrics mBindMetrics;
+
+    /**
+     * 绑定超过阈值时回调
+     */
+    private OnSlowBindListener mOnSlowBindListener;
+    private long mSlowBindThresholdNanos = DEFAULT_SLOW_BIND_THRESHOLD_MILLIS * 1000000;
+
+    /**
+     * 点击事件的设置变化一次加一，绑定时ViewHolder中记录的不一致才重新设置，
+     * 一般只在创建ViewHolder时设置一次
+     */
+    private int mClickListenerVersion;
 
     /**
      * Item点击事件
@@ -63,6 +246,48 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
         void onItemClick(View view, T t, int position, long id);
     }
 
+    /**
+     * Item长按事件
+     */
+    public interface OnItemLongClickListener<T> {
+        /**
+         * 当Item长按的时候回调的方法
+         *
+         * @param view     长按的视图
+         * @param position 长按的位置
+         * @param id       长按视图的ID
+         * @return true 已经处理了长按 / false 没有处理
+         */
+        boolean onItemLongClick(View view, T t, int position, long id);
+    }
+
+    /**
+     * 绑定耗时超过阈值时回调
+     */
+    public interface OnSlowBindListener {
+        /**
+         * 在绑定完成后调用
+         *
+         * @param viewType  绑定的视图类型
+         * @param position  绑定的位置
+         * @param bindNanos 绑定的耗时，单位纳秒
+         */
+        void onSlowBind(int viewType, int position, long bindNanos);
+    }
+
+    /**
+     * Item中子View的点击事件
+     */
+    public interface OnItemChildClickListener<T> {
+        /**
+         * 当Item中的子View点击的时候回调的方法
+         *
+         * @param view     点击的子View
+         * @param position 子View所在Item的位置
+         */
+        void onItemChildClick(View view, T t, int position);
+    }
+
     public RecyclerViewAdapter(Context context) {
         this(context, null);
     }
@@ -80,7 +305,107 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
         } else if (isFooterViewPos(position)) {
             return mFooterViews.keyAt(position - getHeaderCount() - getDataSize());
         }
-        return 0;
+        if (mDelegates.isEmpty()) {
+            return 0;
+        }
+        return getDelegateEntry(getItem(position)).viewType;
+    }
+
+    /**
+     * 注册一种数据类对应的布局和绑定方法，这个类和它的子类的数据都使用它
+     *
+     * @param itemClass 数据的类
+     * @param delegate  对应的布局和绑定方法
+     */
+    @SuppressWarnings("unchecked")
+    public <D extends T> void addItemViewDelegate(Class<D> itemClass, ItemViewDelegate<D> delegate) {
+        mClassDelegates.put(itemClass, newDelegateEntry((ItemViewDelegate<T>) delegate));
+    }
+
+    /**
+     * 注册一个键对应的布局和绑定方法，数据的键由{@link #getItemTypeKey}取得
+     *
+     * @param typeKey  键
+     * @param delegate 对应的布局和绑定方法
+     */
+    public void addItemViewDelegate(int typeKey, ItemViewDelegate<T> delegate) {
+        mKeyDelegates.put(typeKey, newDelegateEntry(delegate));
+    }
+
+    /**
+     * 用键注册ItemViewDelegate时，取得数据对应的键
+     *
+     * @param data 数据，不为null
+     * @return 数据的键
+     */
+    protected int getItemTypeKey(T data) {
+        throw new IllegalStateException("Override getItemTypeKey to use typed delegates");
+    }
+
+    private DelegateEntry<T> newDelegateEntry(ItemViewDelegate<T> delegate) {
+        DelegateEntry<T> entry = new DelegateEntry<>(mDelegates.size(), delegate);
+        mDelegates.add(entry);
+        return entry;
+    }
+
+    /**
+     * 取得数据对应的ItemViewDelegate，分页数据的占位使用第一个注册的
+     */
+    private DelegateEntry<T> getDelegateEntry(T data) {
+        if (data == null) {
+            return mDelegates.get(0);
+        }
+        boolean hasKeys = mKeyDelegates.size() > 0;
+        int key = 0;
+        if (hasKeys) {
+            key = getItemTypeKey(data);
+            DelegateEntry<T> entry = mKeyDelegates.get(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        Class<?> dataClass = data.getClass();
+        DelegateEntry<T> entry = mClassDelegates.get(dataClass);
+        if (entry != null) {
+            return entry;
+        }
+        for (Class<?> c = dataClass.getSuperclass(); c != null; c = c.getSuperclass()) {
+            entry = mClassDelegates.get(c);
+            if (entry != null) {
+                // 下次直接找到
+                mClassDelegates.put(dataClass, entry);
+                return entry;
+            }
+        }
+        throw new IllegalStateException("No ItemViewDelegate for " + dataClass.getName()
+                + (hasKeys ? " or type key " + key : ""));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (mKeyExtractor == null) {
+            return RecyclerView.NO_ID;
+        }
+        if (isHeaderViewPos(position) || isFooterViewPos(position)) {
+            return BASE_ITEM_ID_HEADER_FOOTER + ((long) getItemViewType(position) - BASE_ITEM_TYPE_HEADER);
+        }
+        T data = getItem(position);
+        if (data == null) {
+            // 分页数据还没有加载的占位按位置取ID，多个占位的ID不能相同
+            return BASE_ITEM_ID_PLACEHOLDER + (position - getHeaderCount());
+        }
+        return mKeyExtractor.getKey(data);
+    }
+
+    /**
+     * 设置取得数据唯一键的方法，设置后使用稳定ID，数据变化时RecyclerView可以按ID复用Item和执行动画。
+     * 需要在{@link RecyclerView#setAdapter}之前调用
+     *
+     * @param extractor 为null时不使用稳定ID
+     */
+    public void setItemKeyExtractor(ItemKeyExtractor<T> extractor) {
+        mKeyExtractor = extractor;
+        setHasStableIds(extractor != null);
     }
 
     /**
@@ -104,8 +429,7 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
             gridLayoutManager.setSpanSizeLookup(new GridLayoutManager.SpanSizeLookup() {
                 @Override
                 public int getSpanSize(int position) {
-                    int viewType = getItemViewType(position);
-                    if (mHeaderViews.get(viewType) != null || mFooterViews.get(viewType) != null) {
+                    if (isHeaderViewPos(position) || isFooterViewPos(position)) {
                         return gridLayoutManager.getSpanCount();
                     }
 
@@ -193,9 +517,29 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
      */
     public void setOnItemClickListener(OnItemClickListener<T> li) {
         mOnItemClickListener = li;
-        if (mOnItemClickListener != null) {
-            mOnItemClick = new OnItemClick();
-        }
+        mClickListenerVersion++;
+    }
+
+    /**
+     * 设置Item长按事件
+     *
+     * @param li Item长按事件
+     */
+    public void setOnItemLongClickListener(OnItemLongClickListener<T> li) {
+        mOnItemLongClickListener = li;
+        mClickListenerVersion++;
+    }
+
+    /**
+     * 设置Item中子View的点击事件
+     *
+     * @param li      子View的点击事件
+     * @param viewIds 需要响应点击的子View的ID
+     */
+    public void setOnItemChildClickListener(OnItemChildClickListener<T> li, int... viewIds) {
+        mOnItemChildClickListener = li;
+        mChildClickViewIds = viewIds;
+        mClickListenerVersion++;
     }
 
     /**
@@ -243,6 +587,9 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
      * @return 返回对应的数据
      */
     protected T getItem(int position) {
+        if (mPagedData != null) {
+            return mPagedData.get(position - getHeaderCount());
+        }
         return mData == null ? null : mData.get(position - getHeaderCount());
     }
 
@@ -253,112 +600,677 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        if (mHeaderViews.get(viewType) != null) {
-            return ViewHolder.createViewHolder(mContext, mHeaderViews.get(viewType));
-        } else if (mFooterViews.get(viewType) != null) {
-            return ViewHolder.createViewHolder(mContext, mFooterViews.get(viewType));
+        // HeaderView的类型从BASE_ITEM_TYPE_HEADER开始递增，FooterView的类型从BASE_ITEM_TYPE_FOOTER开始递减，直接算出下标
+        if (viewType < BASE_ITEM_TYPE_HEADER + getHeaderCount()) {
+            return ViewHolder.createViewHolder(mContext, mHeaderViews.valueAt(viewType - BASE_ITEM_TYPE_HEADER));
+        } else if (viewType > BASE_ITEM_TYPE_FOOTER - getFooterCount()) {
+            return ViewHolder.createViewHolder(mContext,
+                    mFooterViews.valueAt(viewType - (BASE_ITEM_TYPE_FOOTER - getFooterCount() + 1)));
         }
 
         int layoutId = getLayoutId(viewType);
-        return ViewHolder.createViewHolder(mInflater, parent, layoutId);
-    }
-
-    @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        int itemType = getItemViewType(position);
-        if (isHeaderViewPos(position) || isFooterViewPos(position)) {
-            if (mHeaderViews.get(itemType) != null) {
-                onHeaderViewBind(holder, position);
+        ViewHolder holder;
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            // ViewHolderPool在后台提前创建
+            holder = ViewHolder.createViewHolder(getBackgroundInflater(), parent, layoutId);
+        } else {
+            if (mViewHolderPool != null) {
+                mViewHolderPool.onInflate(viewType);
             }
-            if (mFooterViews.get(itemType) != null) {
-                onFooterViewBind(holder, position);
+            long start = mBindMetrics != null ? nanoTime() : 0;
+            holder = ViewHolder.createViewHolder(mInflater, parent, layoutId);
+            if (mBindMetrics != null) {
+                mBindMetrics.recordInflate(viewType, nanoTime() - start);
             }
-            return;
         }
+        setupClickListeners(holder);
+        return holder;
+    }
 
-        // 设置点击操作
+    /**
+     * 设置点击事件，ViewHolder记住设置它的Adapter和设置时的版本
+     */
+    private void setupClickListeners(ViewHolder holder) {
+        if (holder.mClickListenerOwner != null) {
+            // 之前设置的先全部移除：其它Adapter设置的会按它的数据回调，自己设置的可能已经改为null
+            clearClickListeners(holder);
+        }
+        holder.mClickListenerOwner = this;
+        holder.mClickListenerVersion = mClickListenerVersion;
         View itemView = holder.itemView;
+        itemView.setTag(R.id.tag_click, holder);
         if (mOnItemClickListener != null) {
             itemView.setOnClickListener(mOnItemClick);
-            itemView.setTag(R.id.tag_click, holder);
+            holder.isItemClickSet = true;
+        }
+        if (mOnItemLongClickListener != null) {
+            itemView.setOnLongClickListener(mOnItemClick);
+            holder.isItemLongClickSet = true;
+        }
+        if (mOnItemChildClickListener != null && mChildClickViewIds != null) {
+            for (int viewId : mChildClickViewIds) {
+                View child = holder.getView(viewId);
+                if (child != null) {
+                    child.setTag(R.id.tag_click, holder);
+                    child.setOnClickListener(mOnItemClick);
+                }
+            }
+            holder.mClickChildViewIds = mChildClickViewIds;
         }
+    }
 
-        T t = getItem(position);
-        onBind(holder, t);
+    /**
+     * 移除上一次设置的点击事件，只移除ViewHolder记录的那些，没有设置过的View不会改动
+     */
+    private static void clearClickListeners(ViewHolder holder) {
+        View itemView = holder.itemView;
+        if (holder.isItemClickSet) {
+            itemView.setOnClickListener(null);
+            itemView.setClickable(false);
+            holder.isItemClickSet = false;
+        }
+        if (holder.isItemLongClickSet) {
+            itemView.setOnLongClickListener(null);
+            itemView.setLongClickable(false);
+            holder.isItemLongClickSet = false;
+        }
+        if (holder.mClickChildViewIds != null) {
+            for (int viewId : holder.mClickChildViewIds) {
+                View child = holder.getView(viewId);
+                if (child != null) {
+                    child.setOnClickListener(null);
+                }
+            }
+            holder.mClickChildViewIds = null;
+        }
     }
 
-    protected void onHeaderViewBind(ViewHolder holder, int position) {
+    private synchronized LayoutInflater getBackgroundInflater() {
+        if (mBackgroundInflater == null) {
+            mBackgroundInflater = mInflater.cloneInContext(mContext);
+        }
+        return mBackgroundInflater;
+    }
 
+    void setViewHolderPool(ViewHolderPool pool) {
+        mViewHolderPool = pool;
     }
 
-    protected void onFooterViewBind(ViewHolder holder, int position) {
+    boolean isHeaderOrFooterViewType(int viewType) {
+        return viewType < BASE_ITEM_TYPE_HEADER + getHeaderCount() || viewType > BASE_ITEM_TYPE_FOOTER - getFooterCount();
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        if (isHeaderViewPos(position)) {
+            onHeaderViewBind(holder, position);
+            return;
+        } else if (isFooterViewPos(position)) {
+            onFooterViewBind(holder, position);
+            return;
+        }
 
+        if (mBindMetrics == null) {
+            bindItem(holder, position);
+            return;
+        }
+        long start = nanoTime();
+        bindItem(holder, position);
+        recordBind(holder, position, nanoTime() - start);
     }
 
-    private class OnItemClick implements View.OnClickListener {
+    private void bindItem(ViewHolder holder, int position) {
+        if (holder.mPreInflatedPool != null) {
+            holder.mPreInflatedPool.onHit(holder.getItemViewType());
+            holder.mPreInflatedPool = null;
+        }
 
-        @Override
-        public void onClick(View v) {
-            if (v == null || mOnItemClickListener == null) {
-                return;
-            }
+        // 点击事件在创建时已经设置，只有由其它Adapter创建或者之后又修改过才重新设置，
+        // 不同Adapter的版本各自计数，不能只比较版本
+        if (holder.mClickListenerOwner != this || holder.mClickListenerVersion != mClickListenerVersion) {
+            setupClickListeners(holder);
+        }
 
-            ViewHolder holder = (ViewHolder) v.getTag(R.id.tag_click);
-            if (holder == null) {
-                return;
-            }
-            int position = holder.getLayoutPosition();
-            mOnItemClickListener.onItemClick(v, getItem(position), position, v.getId());
+        if (mPagedData != null) {
+            mPagedData.onBind(position - getHeaderCount());
+        }
+        T t = getItem(position);
+        if (t == null && mPagedData != null) {
+            onBindPlaceholder(holder, position);
+            return;
         }
+        onBind(holder, t);
     }
 
-    @Override
-    public int getItemCount() {
-        return getHeaderCount() + getFooterCount() + getDataSize();
+    /**
+     * 绑定分页数据中还没有加载的位置，加载完成后会重新绑定。默认以null调用{@link #onBind(ViewHolder, Object)}
+     *
+     * @param holder   ViewHolder视图掌控器
+     * @param position 当前位置
+     */
+    protected void onBindPlaceholder(ViewHolder holder, int position) {
+        onBind(holder, null);
     }
 
-    public List<T> getData() {
-        return mData;
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || isHeaderViewPos(position) || isFooterViewPos(position)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // 点击事件在完整绑定时已经设置过，这里只更新变化的部分
+        if (mBindMetrics == null) {
+            onBind(holder, getItem(position), payloads);
+            return;
+        }
+        long start = nanoTime();
+        onBind(holder, getItem(position), payloads);
+        recordBind(holder, position, nanoTime() - start);
     }
 
-    public int getDataSize() {
-        return mData == null ? 0 : mData.size();
+    private void recordBind(ViewHolder holder, int position, long nanos) {
+        int viewType = holder.getItemViewType();
+        boolean slow = nanos > mSlowBindThresholdNanos;
+        mBindMetrics.recordBind(viewType, nanos, slow);
+        if (slow && mOnSlowBindListener != null) {
+            mOnSlowBindListener.onSlowBind(viewType, position, nanos);
+        }
     }
 
     /**
-     * @param data
+     * 统计耗时使用的时间，单位纳秒，测试时替换成可控的时间
      */
-    public void addData(List<T> data) {
-        mData = checkData(mData);
-        mData.addAll(data);
-        notifyDataSetChanged();
+    @VisibleForTesting
+    long nanoTime() {
+        return System.nanoTime();
     }
 
     /**
-     * @param data
+     * 开启或关闭按视图类型统计创建和绑定的耗时，关闭时绑定只多一次判断
+     *
+     * @param enabled true 开启，之前的统计保留 / false 关闭并丢弃统计
      */
-    public void addData(T data) {
-        mData = checkData(mData);
-        mData.add(data);
-        notifyDataSetChanged();
+    public void setBindMetricsEnabled(boolean enabled) {
+        if (!enabled) {
+            mBindMetrics = null;
+        } else if (mBindMetrics == null) {
+            mBindMetrics = new BindMetrics();
+        }
     }
 
     /**
-     * @param data
+     * 当前的统计，会随着绑定继续变化，需要保存时请使用{@link BindMetrics#snapshot}
+     *
+     * @return 没有开启时为null
      */
-    public void setData(List<T> data) {
-        mData = checkData(mData);
-        mData.clear();
-        mData.addAll(data);
-        notifyDataSetChanged();
+    public BindMetrics getBindMetrics() {
+        return mBindMetrics;
     }
 
     /**
-     * 设置的数据是否是空的
+     * 设置绑定耗时超过阈值时的回调，设置后自动开启统计
      *
-     * @return true 没有设置数据或者设置的数据是空 / false 数据不为空
+     * @param li              回调
+     * @param thresholdMillis 阈值，单位毫秒，一般为一帧的时间
+     */
+    public void setOnSlowBindListener(OnSlowBindListener li, long thresholdMillis) {
+        mOnSlowBindListener = li;
+        mSlowBindThresholdNanos = thresholdMillis * 1000000;
+        if (li != null) {
+            setBindMetricsEnabled(true);
+        }
+    }
+
+    protected void onHeaderViewBind(ViewHolder holder, int position) {
+
+    }
+
+    protected void onFooterViewBind(ViewHolder holder, int position) {
+
+    }
+
+    private class OnItemClick implements View.OnClickListener, View.OnLongClickListener {
+
+        @Override
+        public void onClick(View v) {
+            if (v == null) {
+                return;
+            }
+
+            ViewHolder holder = (ViewHolder) v.getTag(R.id.tag_click);
+            int position = getClickPosition(holder);
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            if (v == holder.itemView) {
+                if (mOnItemClickListener != null) {
+                    mOnItemClickListener.onItemClick(v, getItem(position), position, v.getId());
+                }
+            } else if (mOnItemChildClickListener != null) {
+                mOnItemChildClickListener.onItemChildClick(v, getItem(position), position);
+            }
+        }
+
+        @Override
+        public boolean onLongClick(View v) {
+            if (v == null || mOnItemLongClickListener == null) {
+                return false;
+            }
+
+            ViewHolder holder = (ViewHolder) v.getTag(R.id.tag_click);
+            int position = getClickPosition(holder);
+            if (position == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            return mOnItemLongClickListener.onItemLongClick(v, getItem(position), position, v.getId());
+        }
+
+        /**
+         * 点击时Item在Adapter中的位置，排版变化期间也是准确的；Item已经被删除或者正在整体刷新时返回NO_POSITION
+         */
+        private int getClickPosition(ViewHolder holder) {
+            if (holder == null) {
+                return RecyclerView.NO_POSITION;
+            }
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || !isGeneralItemView(position)) {
+                return RecyclerView.NO_POSITION;
+            }
+            return position;
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return getHeaderCount() + getFooterCount() + getDataSize();
+    }
+
+    public List<T> getData() {
+        return mData;
+    }
+
+    public int getDataSize() {
+        if (mPagedData != null) {
+            return mPagedData.size();
+        }
+        return mData == null ? 0 : mData.size();
+    }
+
+    /**
+     * 使用按页加载的数据代替全部数据，只加载绑定到的页，适合数据很多的列表
+     * <p>
+     * 总条数在后台取得后通知插入，还没有加载的位置调用{@link #onBindPlaceholder}；
+     * 分页数据不能用addData等方法修改，{@link #setData}会退出分页模式。
+     * 加载与计算差异使用同一个线程，见{@link #setDiffExecutor}
+     *
+     * @param pagedData 为null时退出分页模式
+     */
+    public void setPagedData(PagedData<T> pagedData) {
+        dropPendingChanges();
+        if (mPagedData != null) {
+            mPagedData.detach();
+        }
+        mPagedData = pagedData;
+        mPendingData = null;
+        mData = null;
+        notifyDataSetChanged();
+        if (pagedData != null) {
+            pagedData.attach(getBackgroundExecutor(), MAIN_EXECUTOR, mDataUpdateCallback);
+        }
+    }
+
+    public PagedData<T> getPagedData() {
+        return mPagedData;
+    }
+
+    /**
+     * 在最后添加多条数据，只通知新添加的Item
+     *
+     * @param data 添加的数据
+     */
+    public void addData(List<T> data) {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        List<T> target = editData();
+        int start = target.size();
+        target.addAll(data);
+        getUpdateCallback(target).onInserted(start, data.size());
+    }
+
+    /**
+     * 在最后添加一条数据，只通知新添加的Item
+     *
+     * @param data 添加的数据
+     */
+    public void addData(T data) {
+        List<T> target = editData();
+        target.add(data);
+        getUpdateCallback(target).onInserted(target.size() - 1, 1);
+    }
+
+    /**
+     * 在指定位置插入一条数据
+     *
+     * @param position 数据中的位置，不包含HeaderView
+     * @param data     插入的数据
+     */
+    public void insertData(int position, T data) {
+        List<T> target = editData();
+        target.add(position, data);
+        getUpdateCallback(target).onInserted(position, 1);
+    }
+
+    /**
+     * 在指定位置插入多条数据
+     *
+     * @param position 数据中的位置，不包含HeaderView
+     * @param data     插入的数据
+     */
+    public void insertData(int position, List<T> data) {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        List<T> target = editData();
+        target.addAll(position, data);
+        getUpdateCallback(target).onInserted(position, data.size());
+    }
+
+    /**
+     * 删除指定位置的一条数据
+     *
+     * @param position 数据中的位置，不包含HeaderView
+     */
+    public void removeData(int position) {
+        removeData(position, 1);
+    }
+
+    /**
+     * 从指定位置开始删除多条数据
+     *
+     * @param position 数据中的位置，不包含HeaderView
+     * @param count    删除的条数
+     */
+    public void removeData(int position, int count) {
+        if (count <= 0) {
+            return;
+        }
+        List<T> target = editData();
+        target.subList(position, position + count).clear();
+        getUpdateCallback(target).onRemoved(position, count);
+    }
+
+    /**
+     * 移动一条数据
+     *
+     * @param fromPosition 原来在数据中的位置
+     * @param toPosition   移动后在数据中的位置
+     */
+    public void moveData(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition) {
+            return;
+        }
+        List<T> target = editData();
+        target.add(toPosition, target.remove(fromPosition));
+        getUpdateCallback(target).onMoved(fromPosition, toPosition);
+    }
+
+    /**
+     * 替换指定位置的一条数据
+     *
+     * @param position 数据中的位置，不包含HeaderView
+     * @param data     新的数据
+     */
+    public void updateData(int position, T data) {
+        updateData(position, data, null);
+    }
+
+    /**
+     * 替换指定位置的一条数据
+     *
+     * @param position 数据中的位置，不包含HeaderView
+     * @param data     新的数据
+     * @param payload  变化的部分，为null时整个Item重新绑定
+     */
+    public void updateData(int position, T data, Object payload) {
+        List<T> target = editData();
+        target.set(position, data);
+        getUpdateCallback(target).onChanged(position, 1, payload);
+    }
+
+    /**
+     * 从指定位置开始替换多条数据
+     *
+     * @param position 数据中的位置，不包含HeaderView
+     * @param data     新的数据，替换同样条数的旧数据
+     */
+    public void updateData(int position, List<T> data) {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        List<T> target = editData();
+        for (int i = 0; i < data.size(); i++) {
+            target.set(position + i, data.get(i));
+        }
+        getUpdateCallback(target).onChanged(position, data.size(), null);
+    }
+
+    /**
+     * 开始批量修改，直到{@link #endBatchUpdate}之前的所有修改合并成最少的通知一起发出。
+     * 期间修改的是数据的副本，屏幕上显示的和{@link #getData}、{@link #getItem}返回的仍是修改前的数据，
+     * 结束时数据和通知一起生效，RecyclerView在中间排版也不会看到不一致的数据
+     * <p>
+     * 可以嵌套，最外层结束时生效
+     */
+    public void beginBatchUpdate() {
+        mBatchDepth++;
+    }
+
+    /**
+     * 结束批量修改，见{@link #beginBatchUpdate}
+     */
+    public void endBatchUpdate() {
+        if (mBatchDepth == 0) {
+            return;
+        }
+        mBatchDepth--;
+        if (mBatchDepth > 0 || mBatchData == null) {
+            return;
+        }
+        mBatchingCallback.dispatchLastEvent();
+        mData = mBatchData;
+        mBatchData = null;
+        mBatchRecorder.dispatchTo(mDataUpdateCallback);
+    }
+
+    /**
+     * 打开后同一次消息循环中的所有修改自动合并，在下一次消息循环一起生效，
+     * 例如在一个循环中逐条添加200条数据只会发出一次插入通知
+     *
+     * @param batching true 自动合并 / false 每次修改立即通知
+     */
+    public void setFrameBatching(boolean batching) {
+        isFrameBatching = batching;
+        if (!batching && isFrameBatchPosted) {
+            sMainHandler.removeCallbacks(mEndFrameBatch);
+            mEndFrameBatch.run();
+        }
+    }
+
+    /**
+     * 替换全部数据
+     * <p>
+     * 设置了{@link #setDiffCallback}时在后台计算新旧数据的差异，算完后在UI线程替换数据并只通知变化的Item，
+     * 保留Item动画；计算期间再次设置时，之前的结果会被丢弃。
+     * 传入的列表会被复制，之后修改它不会影响Adapter
+     *
+     * @param data 新的数据
+     */
+    public void setData(List<T> data) {
+        final DiffItemCallback<T> callback = mDiffCallback;
+        final int generation = dropPendingChanges();
+        if (mPagedData != null) {
+            mPagedData.detach();
+            mPagedData = null;
+            mData = data == null ? new ArrayList<T>() : new ArrayList<>(data);
+            notifyDataSetChanged();
+            return;
+        }
+        if (callback == null) {
+            if (mPendingData != null) {
+                // 后台可能还在读取旧数据，换成新的列表
+                mPendingData = null;
+                mData = new ArrayList<>();
+            }
+            mData = checkData(mData);
+            mData.clear();
+            if (data != null) {
+                mData.addAll(data);
+            }
+            notifyDataSetChanged();
+            return;
+        }
+
+        final List<T> newData = data == null ? new ArrayList<T>() : new ArrayList<>(data);
+        final List<T> oldData = mData;
+        if (oldData == null || oldData.isEmpty() || newData.isEmpty()) {
+            // 一边为空时不需要计算
+            mPendingData = null;
+            mData = newData;
+            int oldSize = oldData == null ? 0 : oldData.size();
+            if (oldSize > 0) {
+                mDataUpdateCallback.onRemoved(0, oldSize);
+            }
+            if (!newData.isEmpty()) {
+                mDataUpdateCallback.onInserted(0, newData.size());
+            }
+            return;
+        }
+
+        mPendingData = newData;
+        getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mDataGeneration) {
+                    return;
+                }
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DataDiff<>(oldData, newData, callback));
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mDataGeneration) {
+                            return;
+                        }
+                        mPendingData = null;
+                        mData = newData;
+                        result.dispatchUpdatesTo(mDataUpdateCallback);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 设置判断数据项是否相同的方法，设置后{@link #setData}在后台计算差异
+     *
+     * @param callback 为null时setData刷新全部Item
+     */
+    public void setDiffCallback(DiffItemCallback<T> callback) {
+        mDiffCallback = callback;
+    }
+
+    /**
+     * 设置计算差异和加载分页的线程，默认所有Adapter共用一个后台线程
+     *
+     * @param executor 为null时使用默认的线程
+     */
+    public void setDiffExecutor(Executor executor) {
+        mDiffExecutor = executor;
+    }
+
+    /**
+     * 是否还有数据正在后台计算差异
+     */
+    public boolean isDataPending() {
+        return mPendingData != null;
+    }
+
+    /**
+     * 取得可以修改的最新数据：后台正在计算差异时返回最新提交数据的副本，修改后重新提交；
+     * 批量修改时返回数据的副本；否则直接返回数据
+     */
+    private List<T> editData() {
+        if (mPagedData != null) {
+            throw new IllegalStateException("PagedData cannot be modified, use setData to replace it");
+        }
+        if (mPendingData != null) {
+            return new ArrayList<>(mPendingData);
+        }
+        if (isFrameBatching && !isFrameBatchPosted) {
+            isFrameBatchPosted = true;
+            beginBatchUpdate();
+            sMainHandler.post(mEndFrameBatch);
+        }
+        if (mBatchDepth > 0) {
+            if (mBatchData == null) {
+                mBatchData = new ArrayList<>(checkData(mData));
+            }
+            return mBatchData;
+        }
+        mData = checkData(mData);
+        return mData;
+    }
+
+    /**
+     * 修改{@link #editData}返回的数据后发出通知
+     */
+    private ListUpdateCallback getUpdateCallback(List<T> data) {
+        if (data == mBatchData) {
+            return mBatchingCallback;
+        }
+        if (data != mData) {
+            // 最新提交数据的副本，重新计算差异，不需要单独通知
+            setData(data);
+            return IGNORE_UPDATES;
+        }
+        return mDataUpdateCallback;
+    }
+
+    /**
+     * 丢弃后台还没有算完的差异和还没有生效的批量修改，它们会被新数据整个替换
+     *
+     * @return 新数据的编号
+     */
+    private int dropPendingChanges() {
+        mBatchData = null;
+        mBatchingCallback.dispatchLastEvent();
+        mBatchRecorder.clear();
+        return ++mDataGeneration;
+    }
+
+    Executor getBackgroundExecutor() {
+        if (mDiffExecutor != null) {
+            return mDiffExecutor;
+        }
+        synchronized (RecyclerViewAdapter.class) {
+            if (sBackgroundExecutor == null) {
+                sBackgroundExecutor = new ThreadPoolExecutor(1, 1, BACKGROUND_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory());
+                sBackgroundExecutor.allowCoreThreadTimeOut(true);
+            }
+            return sBackgroundExecutor;
+        }
+    }
+
+    /**
+     * 设置的数据是否是空的
+     *
+     * @return true 没有设置数据或者设置的数据是空 / false 数据不为空
      */
     public boolean isEmpty() {
+        if (mPagedData != null) {
+            return mPagedData.size() == 0;
+        }
         return mData != null && mData.isEmpty();
     }
 
@@ -367,18 +1279,226 @@ public abstract class RecyclerViewAdapter<T> extends RecyclerView.Adapter<ViewHo
     }
 
     /**
-     * 将视图与数据进行绑定
+     * 数据中的位置加上HeaderView的数量，FooterView跟在数据后面不受影响
+     */
+    private class DataUpdateCallback implements ListUpdateCallback {
+
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position + getHeaderCount(), count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position + getHeaderCount(), count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition + getHeaderCount(), toPosition + getHeaderCount());
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(position + getHeaderCount(), count, payload);
+        }
+    }
+
+    /**
+     * 在后台比较两份数据，两份数据在计算期间都不会被修改
+     */
+    private static class DataDiff<T> extends DiffUtil.Callback {
+
+        private final List<T> mOldData;
+        private final List<T> mNewData;
+        private final DiffItemCallback<T> mCallback;
+
+        DataDiff(List<T> oldData, List<T> newData, DiffItemCallback<T> callback) {
+            this.mOldData = oldData;
+            this.mNewData = newData;
+            this.mCallback = callback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldData.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewData.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mCallback.areItemsTheSame(mOldData.get(oldItemPosition), mNewData.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mCallback.areContentsTheSame(mOldData.get(oldItemPosition), mNewData.get(newItemPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return mCallback.getChangePayload(mOldData.get(oldItemPosition), mNewData.get(newItemPosition));
+        }
+    }
+
+    /**
+     * 按顺序记录通知，之后一起发出
+     */
+    private static class UpdateRecorder implements ListUpdateCallback {
+
+        private static final int TYPE_INSERTED = 0;
+        private static final int TYPE_REMOVED = 1;
+        private static final int TYPE_MOVED = 2;
+        private static final int TYPE_CHANGED = 3;
+
+        /**
+         * 每个通知占3个位置：类型和两个参数
+         */
+        private int[] mUpdates = new int[3 * 8];
+        private int mSize;
+        private final ArrayList<Object> mPayloads = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            add(TYPE_INSERTED, position, count, null);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            add(TYPE_REMOVED, position, count, null);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            add(TYPE_MOVED, fromPosition, toPosition, null);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            add(TYPE_CHANGED, position, count, payload);
+        }
+
+        private void add(int type, int arg1, int arg2, Object payload) {
+            if (mSize + 3 > mUpdates.length) {
+                int[] updates = new int[mUpdates.length * 2];
+                System.arraycopy(mUpdates, 0, updates, 0, mSize);
+                mUpdates = updates;
+            }
+            mUpdates[mSize++] = type;
+            mUpdates[mSize++] = arg1;
+            mUpdates[mSize++] = arg2;
+            mPayloads.add(payload);
+        }
+
+        void dispatchTo(ListUpdateCallback callback) {
+            for (int i = 0; i < mSize; i += 3) {
+                int arg1 = mUpdates[i + 1];
+                int arg2 = mUpdates[i + 2];
+                switch (mUpdates[i]) {
+                    case TYPE_INSERTED:
+                        callback.onInserted(arg1, arg2);
+                        break;
+                    case TYPE_REMOVED:
+                        callback.onRemoved(arg1, arg2);
+                        break;
+                    case TYPE_MOVED:
+                        callback.onMoved(arg1, arg2);
+                        break;
+                    default:
+                        callback.onChanged(arg1, arg2, mPayloads.get(i / 3));
+                        break;
+                }
+            }
+            clear();
+        }
+
+        void clear() {
+            mSize = 0;
+            mPayloads.clear();
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "RecyclerViewAdapter #" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * 将视图与数据进行绑定，默认交给数据对应的ItemViewDelegate，没有注册任何ItemViewDelegate时必须重写
      *
      * @param holder ViewHolder视图掌控器
      * @param data   当前需要绑定的数据
      */
-    public abstract void onBind(ViewHolder holder, T data);
+    public void onBind(ViewHolder holder, T data) {
+        if (mDelegates.isEmpty()) {
+            throw new IllegalStateException("No ItemViewDelegate for "
+                    + (data == null ? "null" : data.getClass().getName())
+                    + ", override onBind in " + getClass().getName() + " or add an ItemViewDelegate");
+        }
+        getViewTypeDelegate(holder.getItemViewType()).onBind(holder, data);
+    }
+
+    /**
+     * 只有部分内容变化时的绑定，payloads来自{@link #updateData(int, Object, Object)}
+     * 或者{@link DiffItemCallback#getChangePayload}，同一个Item多次变化时会有多个。
+     * 默认交给ItemViewDelegate，没有注册时完整绑定，重写后可以只更新变化的View
+     *
+     * @param holder   ViewHolder视图掌控器
+     * @param data     当前需要绑定的数据
+     * @param payloads 变化的部分，不为空
+     */
+    public void onBind(ViewHolder holder, T data, List<Object> payloads) {
+        if (mDelegates.isEmpty()) {
+            onBind(holder, data);
+            return;
+        }
+        getViewTypeDelegate(holder.getItemViewType()).onBind(holder, data, payloads);
+    }
 
     /**
-     * 获取当前类型item的布局ID
+     * 获取当前类型item的布局ID，默认取对应ItemViewDelegate的布局，没有注册任何ItemViewDelegate时必须重写
      *
      * @param viewType 对应布局的类型
      * @return 当前类型布局的ID，这个布局会被绘制为Item布局
      */
-    public abstract int getLayoutId(int viewType);
+    public int getLayoutId(int viewType) {
+        return getViewTypeDelegate(viewType).getLayoutId();
+    }
+
+    private ItemViewDelegate<T> getViewTypeDelegate(int viewType) {
+        if (mDelegates.isEmpty()) {
+            throw new IllegalStateException("No ItemViewDelegate for view type " + viewType
+                    + ", override getLayoutId and onBind in " + getClass().getName() + " or add an ItemViewDelegate");
+        }
+        if (viewType < 0 || viewType >= mDelegates.size()) {
+            throw new IllegalStateException("No ItemViewDelegate for view type " + viewType
+                    + ", the ViewHolder was created by another Adapter");
+        }
+        return mDelegates.get(viewType).delegate;
+    }
+
+    /**
+     * 视图类型和对应的ItemViewDelegate
+     */
+    private static final class DelegateEntry<T> {
+
+        final int viewType;
+        final ItemViewDelegate<T> delegate;
+
+        DelegateEntry(int viewType, ItemViewDelegate<T> delegate) {
+            this.viewType = viewType;
+            this.delegate = delegate;
+        }
+    }
 }
@@ -23,6 +23,28 @@ public class ViewHolder extends RecyclerView.ViewHolder {
     private Resources mResources;
     private View mConvertView;
 
+    /**
+     * 由{@link ViewHolderPool}提前创建、还没有被绑定过时不为null
+     */
+    ViewHolderPool mPreInflatedPool;
+
+    /**
+     * 设置点击事件的Adapter，共用{@link ViewHolderPool}时ViewHolder可能被另一个Adapter绑定
+     */
+    RecyclerViewAdapter<?> mClickListenerOwner;
+
+    /**
+     * 设置点击事件时Adapter中点击事件的版本，与Adapter不同或者版本不一致时绑定时重新设置
+     */
+    int mClickListenerVersion = -1;
+
+    /**
+     * 上一次设置了哪些点击事件，重新设置或者被另一个Adapter绑定时只移除这些
+     */
+    boolean isItemClickSet = false;
+    boolean isItemLongClickSet = false;
+    int[] mClickChildViewIds;
+
     public ViewHolder(Context context, View itemView) {
         super(itemView);
         mConvertView = itemView;
@@ -0,0 +1,201 @@
+package com.custom.ui.common;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.SparseArrayCompat;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * 可以在多个列表之间共用的ViewHolder缓存，并且可以在列表显示之前在后台提前创建ViewHolder
+ * <p>
+ * 第一次滑动一个新页面时，每个新出现的Item都要在UI线程加载布局，容易卡顿。
+ * 用{@link #preInflate}在后台先创建好放进缓存，列表显示时直接取用。
+ * 只有视图类型相同的Adapter才能共用，例如同一种Adapter的多个页面。
+ * 后台加载布局失败时(例如布局中的View需要Looper)改为在UI线程创建。
+ * 除了后台创建，所有方法都在UI线程调用
+ */
+
+public final class ViewHolderPool {
+
+    /**
+     * RecyclerView每种类型默认最多缓存的个数
+     */
+    private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
+    private final RecyclerView.RecycledViewPool mPool = new RecyclerView.RecycledViewPool();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 视图类型 <----> 这种类型的缓存上限和统计
+     */
+    private final SparseArrayCompat<TypeStats> mStats = new SparseArrayCompat<>();
+
+    /**
+     * 每次清空加一，之前提交的后台创建直接丢弃
+     */
+    private volatile int mGeneration;
+
+    /**
+     * 正在UI线程代替后台创建，不算作列表自己创建
+     */
+    private boolean isInflatingOnMain = false;
+
+    public RecyclerView.RecycledViewPool getRecycledViewPool() {
+        return mPool;
+    }
+
+    /**
+     * 让列表使用这个缓存，并统计Adapter在UI线程创建的次数
+     *
+     * @param recyclerView 列表
+     * @param adapter      列表的Adapter
+     */
+    public void attach(RecyclerView recyclerView, RecyclerViewAdapter<?> adapter) {
+        recyclerView.setRecycledViewPool(mPool);
+        adapter.setViewHolderPool(this);
+    }
+
+    /**
+     * 设置一种视图类型最多缓存的个数，RecyclerView默认为5
+     *
+     * @param viewType 视图类型
+     * @param max      最多缓存的个数
+     */
+    public void setMaxRecycledViews(int viewType, int max) {
+        TypeStats stats = getStats(viewType);
+        stats.maxSize = max;
+        stats.isMaxSizeSet = true;
+        mPool.setMaxRecycledViews(viewType, max);
+    }
+
+    /**
+     * 在后台提前创建ViewHolder放进缓存，创建完成前列表已经显示也没有关系，
+     * 已经创建好的会被取用，其余的照常在UI线程创建。
+     * 缓存上限不够时会提高到能放下，用{@link #setMaxRecycledViews}设置过的不会超过设置的上限
+     *
+     * @param adapter  创建ViewHolder的Adapter
+     * @param parent   ViewHolder将要放进的列表，用于生成布局参数
+     * @param viewType 视图类型，不能是HeaderView或FooterView
+     * @param count    创建的个数
+     */
+    public void preInflate(final RecyclerViewAdapter<?> adapter, final RecyclerView parent, final int viewType, int count) {
+        if (adapter.isHeaderOrFooterViewType(viewType)) {
+            throw new IllegalArgumentException("HeaderView and FooterView can not be pre-inflated");
+        }
+        adapter.setViewHolderPool(this);
+        final TypeStats stats = getStats(viewType);
+        int cached = mPool.getRecycledViewCount(viewType) + stats.pending;
+        if (stats.isMaxSizeSet) {
+            count = Math.min(count, stats.maxSize - cached);
+        } else if (cached + count > stats.maxSize) {
+            stats.maxSize = cached + count;
+            mPool.setMaxRecycledViews(viewType, stats.maxSize);
+        }
+        final int generation = mGeneration;
+        for (int i = 0; i < count; i++) {
+            stats.pending++;
+            adapter.getBackgroundExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation != mGeneration) {
+                        return;
+                    }
+                    ViewHolder holder;
+                    try {
+                        holder = adapter.createViewHolder(parent, viewType);
+                    } catch (RuntimeException e) {
+                        holder = null;
+                    }
+                    final ViewHolder created = holder;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            stats.pending--;
+                            if (generation != mGeneration) {
+                                return;
+                            }
+                            ViewHolder holder = created;
+                            if (holder == null) {
+                                isInflatingOnMain = true;
+                                try {
+                                    holder = adapter.createViewHolder(parent, viewType);
+                                } finally {
+                                    isInflatingOnMain = false;
+                                }
+                            }
+                            holder.mPreInflatedPool = ViewHolderPool.this;
+                            stats.preInflated++;
+                            mPool.putRecycledView(holder);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * 清空缓存，还没有完成的提前创建被丢弃
+     */
+    public void clear() {
+        mGeneration++;
+        mPool.clear();
+    }
+
+    /**
+     * 提前创建的个数
+     */
+    public int getPreInflatedCount(int viewType) {
+        TypeStats stats = mStats.get(viewType);
+        return stats == null ? 0 : stats.preInflated;
+    }
+
+    /**
+     * 提前创建的ViewHolder被列表取用的次数
+     */
+    public int getHitCount(int viewType) {
+        TypeStats stats = mStats.get(viewType);
+        return stats == null ? 0 : stats.hits;
+    }
+
+    /**
+     * 列表显示时没有可用的缓存、在UI线程创建的次数
+     */
+    public int getInflateCount(int viewType) {
+        TypeStats stats = mStats.get(viewType);
+        return stats == null ? 0 : stats.inflations;
+    }
+
+    /**
+     * Adapter在UI线程创建了一个ViewHolder
+     */
+    void onInflate(int viewType) {
+        if (!isInflatingOnMain) {
+            getStats(viewType).inflations++;
+        }
+    }
+
+    /**
+     * 提前创建的ViewHolder第一次被绑定
+     */
+    void onHit(int viewType) {
+        getStats(viewType).hits++;
+    }
+
+    private TypeStats getStats(int viewType) {
+        TypeStats stats = mStats.get(viewType);
+        if (stats == null) {
+            stats = new TypeStats();
+            mStats.put(viewType, stats);
+        }
+        return stats;
+    }
+
+    private static final class TypeStats {
+        int maxSize = DEFAULT_MAX_RECYCLED_VIEWS;
+        boolean isMaxSizeSet = false;
+        int pending;
+        int preInflated;
+        int hits;
+        int inflations;
+    }
+}
@@ -0,0 +1,43 @@
+package com.custom.ui.textview;
+
+import android.view.View;
+
+/**
+ * 逐个显示完成后执行的结束效果
+ * <p>
+ * 每个FadeTextView使用自己的实例，实例在多次显示之间复用，不应该在每次执行时创建新的对象
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+public interface FadeEndEffect {
+
+    /**
+     * 开始执行结束效果
+     *
+     * @param view     执行效果的View
+     * @param listener 效果执行完毕时回调，取消时不回调
+     */
+    void start(View view, Listener listener);
+
+    /**
+     * 取消正在执行的效果并恢复View的状态，不回调{@link Listener#onEffectEnd()}
+     */
+    void cancel();
+
+    /**
+     * 立即结束正在执行的效果，会回调{@link Listener#onEffectEnd()}
+     */
+    void end();
+
+    /**
+     * 结束效果的监听
+     */
+    interface Listener {
+        /**
+         * 效果执行完毕
+         */
+        void onEffectEnd();
+    }
+}
@@ -0,0 +1,191 @@
+package com.custom.ui.textview;
+
+/**
+ * 一次逐个显示的性能数据，每个FadeTextView只创建一个并在每次显示时重复使用，
+ * 记录过程中只修改基本类型的计数，不创建任何对象，可以在线上一直开启
+ * <p>
+ * 通过{@link FadeTextView#setRevealMetricsListener}在每次显示结束时取得，
+ * 回调之后内容会被下一次显示覆盖，需要保存的数据请在回调中复制出来
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+public final class FadeRevealMetrics {
+
+    /**
+     * 正常显示完
+     */
+    public static final int END_FINISHED = 0;
+
+    /**
+     * 被{@link FadeTextView#skipTextFade}或不可见时的快进直接显示完
+     */
+    public static final int END_SKIPPED = 1;
+
+    /**
+     * 被取消或者被新的文字替换
+     */
+    public static final int END_CANCELLED = 2;
+
+    /**
+     * 一帧的时间，更新比应该显示的时间晚超过一帧算作延迟
+     */
+    private static final long FRAME_INTERVAL = 16;
+
+    /**
+     * 显示结束时回调
+     */
+    public interface Listener {
+        /**
+         * @param view    显示结束的View
+         * @param metrics 这次显示的数据，回调之后会被重复使用
+         */
+        void onRevealMetrics(FadeTextView view, FadeRevealMetrics metrics);
+    }
+
+    private boolean isRunning = false;
+    private int mRevealMode;
+    private int mEndReason;
+    private long mStartTime;
+    private long mEndTime;
+    private long mExpectedDuration;
+    private int mLength;
+    private int mFrameCount;
+    private int mUpdateCount;
+    private int mLateUpdateCount;
+    private int mCharCount;
+    private int mMaxCharsPerUpdate;
+    private long mLayoutTimeNanos;
+
+    void start(int revealMode, long startTime) {
+        isRunning = true;
+        mRevealMode = revealMode;
+        mEndReason = END_FINISHED;
+        mStartTime = startTime;
+        mEndTime = startTime;
+        mExpectedDuration = 0;
+        mLength = 0;
+        mFrameCount = 0;
+        mUpdateCount = 0;
+        mLateUpdateCount = 0;
+        mCharCount = 0;
+        mMaxCharsPerUpdate = 0;
+        mLayoutTimeNanos = 0;
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * 收到一帧回调并且做了显示工作
+     */
+    void onFrame() {
+        mFrameCount++;
+    }
+
+    /**
+     * 可见的文字变化了一次
+     *
+     * @param time    更新的时间
+     * @param dueTime 这次新显示的第一个字应该显示的时间
+     * @param chars   这次新显示的字数
+     */
+    void onUpdate(long time, long dueTime, int chars) {
+        mUpdateCount++;
+        mCharCount += chars;
+        if (chars > mMaxCharsPerUpdate) {
+            mMaxCharsPerUpdate = chars;
+        }
+        if (time - dueTime > FRAME_INTERVAL) {
+            mLateUpdateCount++;
+        }
+    }
+
+    void addLayoutTime(long nanos) {
+        mLayoutTimeNanos += nanos;
+    }
+
+    void finish(long endTime, int length, long expectedDuration, int endReason) {
+        isRunning = false;
+        mEndTime = endTime;
+        mLength = length;
+        mExpectedDuration = expectedDuration;
+        mEndReason = endReason;
+    }
+
+    /**
+     * 显示方式，见{@link FadeTextView#setRevealMode}
+     */
+    public int getRevealMode() {
+        return mRevealMode;
+    }
+
+    /**
+     * {@link #END_FINISHED}、{@link #END_SKIPPED} 或 {@link #END_CANCELLED}
+     */
+    public int getEndReason() {
+        return mEndReason;
+    }
+
+    /**
+     * 从开始显示(包含延迟)到显示结束的实际时间
+     */
+    public long getDuration() {
+        return mEndTime - mStartTime;
+    }
+
+    /**
+     * 按每个字的显示间隔计算应该花费的时间，流式显示时不包含等待追加的时间
+     */
+    public long getExpectedDuration() {
+        return mExpectedDuration;
+    }
+
+    /**
+     * 结束时的文字长度
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * 做了显示工作的帧数
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * 可见文字变化的次数
+     */
+    public int getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    /**
+     * 比应该显示的时间晚超过一帧的更新次数
+     */
+    public int getLateUpdateCount() {
+        return mLateUpdateCount;
+    }
+
+    /**
+     * 平均每次更新显示的字数
+     */
+    public float getCharsPerUpdate() {
+        return mUpdateCount == 0 ? 0 : (float) mCharCount / mUpdateCount;
+    }
+
+    public int getMaxCharsPerUpdate() {
+        return mMaxCharsPerUpdate;
+    }
+
+    /**
+     * 设置文字、测量和分行花费的时间
+     */
+    public long getLayoutTimeNanos() {
+        return mLayoutTimeNanos;
+    }
+}
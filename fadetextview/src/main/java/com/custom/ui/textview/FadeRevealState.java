@@ -0,0 +1,81 @@
+package com.custom.ui.textview;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.text.TextUtils;
+
+/**
+ * 逐个显示的进度快照：文字、已经显示的字数和是否已经显示完
+ * <p>
+ * 由{@link FadeTextView#saveRevealState()}取得，{@link FadeTextView#restoreRevealState}恢复后
+ * 从保存时的位置继续显示，已经显示过的文字不会重新显示。
+ * 列表中可以在回收时为每一项保存一份，重新绑定时恢复；屏幕旋转等重建时由View自己保存和恢复
+ * <p>
+ * 快照只精确到字：正在显示的这个字已经经过的时间不保存，恢复后从这个字重新计时。
+ * 也不保存显示的阶段：结束效果正在执行时按已经显示完保存，恢复后不再执行结束效果；
+ * {@link FadeTextView#REPLACE_POLICY_QUEUE}排队的文字不保存；流式显示恢复后不再等待追加
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+public final class FadeRevealState implements Parcelable {
+
+    private final CharSequence mText;
+    private final int mIndex;
+    private final boolean isFinished;
+
+    FadeRevealState(CharSequence text, int index, boolean finished) {
+        this.mText = text;
+        this.mIndex = Math.max(0, Math.min(index, text.length()));
+        this.isFinished = finished || mIndex >= text.length();
+    }
+
+    private FadeRevealState(Parcel source) {
+        this.mText = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(source);
+        this.mIndex = source.readInt();
+        this.isFinished = source.readInt() != 0;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * 已经显示的字数
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * 是否已经显示完，结束效果正在执行时也算显示完
+     */
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        TextUtils.writeToParcel(mText, dest, flags);
+        dest.writeInt(mIndex);
+        dest.writeInt(isFinished ? 1 : 0);
+    }
+
+    public static final Creator<FadeRevealState> CREATOR = new Creator<FadeRevealState>() {
+        @Override
+        public FadeRevealState createFromParcel(Parcel source) {
+            return new FadeRevealState(source);
+        }
+
+        @Override
+        public FadeRevealState[] newArray(int size) {
+            return new FadeRevealState[size];
+        }
+    };
+}
@@ -0,0 +1,396 @@
+package com.custom.ui.textview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.VisibleForTesting;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 所有FadeTextView共用的调度器
+ * <p>
+ * 逐帧显示只用一个帧回调驱动所有注册的View，不占用任何线程；
+ * 需要在后台执行的任务共用一个有上限的线程池，空闲时线程会被回收。
+ * 同时负责错开同一时间开始的多个显示，以及限制所有View每帧显示的总字数。
+ * 时间、帧回调和线程都来自{@link Host}，测试时可以替换为虚拟时间
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+final class FadeScheduler {
+
+    /**
+     * 后台线程数上限
+     */
+    private static final int MAX_THREADS = 1;
+
+    /**
+     * 后台线程空闲多久后回收
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * 不支持Choreographer时两帧之间的间隔
+     */
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    /**
+     * 需要逐帧回调的对象
+     */
+    interface FrameClient {
+        /**
+         * 每帧回调一次，只在UI线程执行
+         *
+         * @param frameTimeMillis 当前帧的时间
+         * @return true 继续接收下一帧 / false 不再需要回调，会被自动移除
+         */
+        boolean onFadeFrame(long frameTimeMillis);
+    }
+
+    /**
+     * 时间、帧回调和线程的来源
+     */
+    interface Host {
+        /**
+         * 当前时间，与帧回调里的时间使用同一个时钟
+         */
+        long now();
+
+        /**
+         * 在下一帧回调一次scheduler的{@link FadeScheduler#doFrame}
+         */
+        void postFrame(FadeScheduler scheduler);
+
+        /**
+         * 延迟一段时间后在UI线程执行，可以在任意线程调用
+         */
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+
+        /**
+         * 在后台线程执行
+         */
+        void execute(Runnable task);
+
+        /**
+         * 从后台队列中移除还没开始执行的任务
+         */
+        void cancel(Runnable task);
+    }
+
+    private final ArrayList<FrameClient> mClients = new ArrayList<>();
+
+    private Host mHost;
+
+    private boolean mFrameScheduled = false;
+
+    /**
+     * 所有View每帧最多显示的总字数，小于等于0时不限制
+     */
+    private int mFrameBudget = 0;
+
+    /**
+     * 当前帧剩余可以显示的字数
+     */
+    private int mFrameBudgetLeft = Integer.MAX_VALUE;
+
+    /**
+     * 依次开始的显示之间至少间隔的时间
+     */
+    private long mStaggerDelay = 0;
+
+    private long mLastStartTime = Long.MIN_VALUE;
+
+    /**
+     * 每帧从不同的对象开始回调，预算不足时不会总是饿死排在后面的View
+     */
+    private int mFirstClient = 0;
+
+    private FadeScheduler(Host host) {
+        this.mHost = host;
+    }
+
+    /**
+     * 可以在任意线程调用，ViewHolderPool会在后台线程创建FadeTextView；
+     * 其它方法除了注明可以在任意线程调用的，都只能在UI线程调用
+     */
+    static FadeScheduler getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * 替换时间和线程的来源，同时清空所有状态，只用于测试
+     *
+     * @param host 为null时恢复实际运行时的来源
+     */
+    @VisibleForTesting
+    static void setHost(Host host) {
+        if (host == null) {
+            host = new AndroidHost();
+        }
+        FadeScheduler scheduler = getInstance();
+        scheduler.mHost = host;
+        scheduler.mClients.clear();
+        scheduler.mFrameScheduled = false;
+        scheduler.mFrameBudget = 0;
+        scheduler.mFrameBudgetLeft = Integer.MAX_VALUE;
+        scheduler.mStaggerDelay = 0;
+        scheduler.mLastStartTime = Long.MIN_VALUE;
+        scheduler.mFirstClient = 0;
+    }
+
+    /**
+     * 当前时间，与帧回调里的时间使用同一个时钟
+     */
+    long now() {
+        return mHost.now();
+    }
+
+    /**
+     * 计算一次新的显示的开始时间，距离上一次开始至少间隔{@link #setStaggerDelay}
+     *
+     * @param delay 这次显示自己的延迟
+     */
+    long nextStartTime(long delay) {
+        long startTime = now() + Math.max(0, delay);
+        if (mStaggerDelay > 0 && mLastStartTime != Long.MIN_VALUE && startTime < mLastStartTime + mStaggerDelay) {
+            startTime = mLastStartTime + mStaggerDelay;
+        }
+        mLastStartTime = startTime;
+        return startTime;
+    }
+
+    void setStaggerDelay(long staggerDelay) {
+        mStaggerDelay = Math.max(0, staggerDelay);
+    }
+
+    void setFrameBudget(int frameBudget) {
+        mFrameBudget = frameBudget;
+    }
+
+    /**
+     * 当前帧剩余可以显示的字数
+     */
+    int getFrameBudget() {
+        return mFrameBudgetLeft;
+    }
+
+    /**
+     * 扣除当前帧已经显示的字数
+     *
+     * @param count 重新开始显示时进度会后退，不能把后退的字数还给其它View
+     */
+    void consumeFrameBudget(int count) {
+        if (mFrameBudget > 0 && count > 0) {
+            mFrameBudgetLeft = Math.max(0, mFrameBudgetLeft - count);
+        }
+    }
+
+    /**
+     * 注册逐帧回调，重复注册只会回调一次
+     */
+    void register(FrameClient client) {
+        if (!mClients.contains(client)) {
+            mClients.add(client);
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * 取消逐帧回调，可以在回调过程中调用
+     */
+    void unregister(FrameClient client) {
+        int index = mClients.indexOf(client);
+        if (index >= 0) {
+            mClients.set(index, null);
+        }
+    }
+
+    /**
+     * 在共用的后台线程执行任务
+     */
+    void execute(Runnable task) {
+        mHost.execute(task);
+    }
+
+    /**
+     * 从后台队列中移除还没开始执行的任务
+     */
+    void cancel(Runnable task) {
+        mHost.cancel(task);
+    }
+
+    /**
+     * 在UI线程执行任务，可以在任意线程调用
+     */
+    void post(Runnable task) {
+        mHost.postDelayed(task, 0);
+    }
+
+    /**
+     * 延迟一段时间后在UI线程执行任务，可以在任意线程调用
+     */
+    void postDelayed(Runnable task, long delayMillis) {
+        mHost.postDelayed(task, delayMillis);
+    }
+
+    void removeCallbacks(Runnable task) {
+        mHost.removeCallbacks(task);
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = true;
+        mHost.postFrame(this);
+    }
+
+    void doFrame(long frameTimeMillis) {
+        mFrameScheduled = false;
+        mFrameBudgetLeft = mFrameBudget > 0 ? mFrameBudget : Integer.MAX_VALUE;
+        // 回调过程中新注册的对象从下一帧开始回调
+        int count = mClients.size();
+        int first = count == 0 ? 0 : mFirstClient % count;
+        mFirstClient = first + 1;
+        for (int k = 0; k < count; k++) {
+            int i = (first + k) % count;
+            FrameClient client = mClients.get(i);
+            if (client != null && !client.onFadeFrame(frameTimeMillis) && mClients.get(i) == client) {
+                mClients.set(i, null);
+            }
+        }
+        for (int i = mClients.size() - 1; i >= 0; i--) {
+            if (mClients.get(i) == null) {
+                mClients.remove(i);
+            }
+        }
+        if (!mClients.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * 第一次调用{@link #getInstance}时由类加载保证只创建一次，不需要加锁
+     */
+    private static final class InstanceHolder {
+        static final FadeScheduler INSTANCE = new FadeScheduler(new AndroidHost());
+    }
+
+    /**
+     * 实际运行时使用的来源：UI线程的Handler、Choreographer和一个有上限的线程池
+     */
+    private static class AndroidHost implements Host {
+
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        private ThreadPoolExecutor mExecutor;
+
+        private FadeScheduler mScheduler;
+
+        private FrameCallbackCompat mFrameCallback;
+
+        private final Runnable mFallbackFrameRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mScheduler.doFrame(SystemClock.uptimeMillis());
+            }
+        };
+
+        @Override
+        public long now() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void postFrame(FadeScheduler scheduler) {
+            mScheduler = scheduler;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                if (mFrameCallback == null) {
+                    mFrameCallback = new FrameCallbackCompat(scheduler);
+                }
+                mFrameCallback.post();
+            } else {
+                mMainHandler.postDelayed(mFallbackFrameRunnable, FALLBACK_FRAME_DELAY);
+            }
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            mMainHandler.postDelayed(task, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            mMainHandler.removeCallbacks(task);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (mExecutor == null) {
+                mExecutor = createExecutor();
+            }
+            mExecutor.execute(task);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            if (mExecutor != null) {
+                mExecutor.remove(task);
+            }
+        }
+
+        private static ThreadPoolExecutor createExecutor() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new FadeThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    private static class FadeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FadeTextView #" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * API 16以上使用Choreographer，放在单独的类里避免低版本加载
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallbackCompat implements Choreographer.FrameCallback {
+
+        private final FadeScheduler mScheduler;
+
+        FrameCallbackCompat(FadeScheduler scheduler) {
+            this.mScheduler = scheduler;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mScheduler.doFrame(TimeUnit.NANOSECONDS.toMillis(frameTimeNanos));
+        }
+    }
+}
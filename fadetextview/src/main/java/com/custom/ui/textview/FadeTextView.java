@@ -1,21 +1,29 @@
 package com.custom.ui.textview;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
-import android.os.Handler;
-import android.os.Message;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
+import android.text.Layout;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextPaint;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
-import android.view.animation.DecelerateInterpolator;
+import android.view.Gravity;
+import android.view.ViewGroup;
 
-import java.lang.ref.WeakReference;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 
 /**
  * with fade anim text view
@@ -29,30 +37,340 @@ public class FadeTextView extends android.support.v7.widget.AppCompatTextView {
     private static final boolean DEBUG = true;
     private static final String TAG = FadeTextView.class.getSimpleName();
 
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
     /****
      * 动画执行时间间隔
      */
     private static final int DEFAULT_DURATION = 10;
     /**
-     * 执行逐个显示
-     **/
-    private static final int MSG_HANDLER_FADE = 0;
+     * 跟随屏幕刷新逐帧显示，每帧按流逝的时间显示对应的字数
+     */
+    public static final int REVEAL_MODE_FRAME = 0;
+
+    /**
+     * 线程池截取字符串 + Handler定时逐个显示
+     */
+    public static final int REVEAL_MODE_HANDLER = 1;
+
+    /**
+     * 开始时一次性设置全部文字并完成测量和排版，之后逐帧只改变绘制的范围，显示过程中View的大小不变
+     */
+    public static final int REVEAL_MODE_CLIP = 2;
+
+    /**
+     * 超长文字：不做整体排版，只对正在显示的行分行，总耗时与文字长度成线性关系，并限制每帧的工作量
+     */
+    public static final int REVEAL_MODE_LONG_TEXT = 3;
+
+    /**
+     * {@link #REVEAL_MODE_LONG_TEXT}模式下每帧最多显示的字数
+     */
+    private static final int LONG_TEXT_MAX_CHARS_PER_FRAME = 200;
+
+    /**
+     * 与{@link #REVEAL_MODE_CLIP}一样只排版一次，最后显示出来的几个字从透明逐渐变为不透明
+     */
+    public static final int REVEAL_MODE_ALPHA = 4;
+
+    /**
+     * {@link #REVEAL_MODE_ALPHA}模式下每个字从透明到不透明的时间
+     */
+    private static final int DEFAULT_FADE_DURATION = 150;
+
+    /**
+     * {@link #appendTextFade}待提交文字的缓冲区大小，同一帧内多次追加的文字在下一帧一起提交
+     */
+    private static final int PENDING_CAPACITY = 1024;
+
+    /**
+     * 逐个UTF-16字符显示
+     */
+    public static final int REVEAL_UNIT_CHAR = 0;
+
+    /**
+     * 按用户可见的字显示，emoji、代理对和组合字符不会只显示一半
+     */
+    public static final int REVEAL_UNIT_GRAPHEME = 1;
+
+    /**
+     * 按单词显示，单词后面的空白一起显示，长的英文文字更新次数大大减少
+     */
+    public static final int REVEAL_UNIT_WORD = 2;
+
+    /**
+     * 按换行符分隔的行显示
+     */
+    public static final int REVEAL_UNIT_LINE = 3;
+
+    /**
+     * 正在显示时忽略新的文字
+     */
+    public static final int REPLACE_POLICY_IGNORE = 0;
+
+    /**
+     * 取消正在进行的显示，立即开始显示新的文字
+     */
+    public static final int REPLACE_POLICY_LATEST = 1;
+
+    /**
+     * 新的文字排队，当前显示结束后依次显示，队列满时丢弃最早的文字
+     */
+    public static final int REPLACE_POLICY_QUEUE = 2;
+
+    /**
+     * 立即显示完当前的文字，然后开始显示新的文字
+     */
+    public static final int REPLACE_POLICY_SKIP_TO_END = 3;
+
+    /**
+     * {@link #REPLACE_POLICY_QUEUE}默认的队列长度
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    /**
+     * 不在屏幕上、不可见或离开窗口时暂停显示
+     */
+    public static final int HIDDEN_POLICY_PAUSE = 0;
+
+    /**
+     * 不在屏幕上、不可见或离开窗口时立即显示完
+     */
+    public static final int HIDDEN_POLICY_FAST_FORWARD = 1;
+
+    /**
+     * 暂停后重新可见时从暂停的位置继续
+     */
+    public static final int RETURN_POLICY_RESUME = 0;
+
+    /**
+     * 暂停后重新可见时立即显示完
+     */
+    public static final int RETURN_POLICY_JUMP_TO_END = 1;
 
     /**
-     * 执行放大动画
-     **/
-    private static final int MSG_HANDLER_ANIM = 1;
+     * 暂停后重新可见时从头开始显示
+     */
+    public static final int RETURN_POLICY_RESTART = 2;
 
-    private String fadeText;
+    private CharSequence fadeText;
     private int length;
 
-    private FadeHandler mHandler;
+    /**
+     * 要显示的全部文字，只保存一份并在多次显示之间复用，逐个显示时只改变可见的长度，不再截取字符串
+     */
+    private char[] fadeChars;
+
+    /**
+     * 显示的是{@link #fadeChars}的一部分
+     */
+    private boolean isFadeCharsShown;
+
+    /**
+     * {@link #getText()}返回过直接引用{@link #fadeChars}的文字，下一次显示不能再覆盖这个数组
+     */
+    private boolean isFadeCharsShared;
+
+    /**
+     * 追加的文字先放在这里，下一帧开始时一起提交，一帧最多更新一次
+     */
+    private char[] mPendingChars;
+    private int mPendingLength;
+
+    /**
+     * 带样式的文字，加粗、链接、颜色等样式只在开始时排版一次，逐个显示时只改变可见的范围
+     */
+    private SpannableStringBuilder mFadeSpannable;
+
+    /**
+     * 带样式的文字追加时，等待提交的部分
+     */
+    private SpannableStringBuilder mPendingSpannable;
+
+    /**
+     * 是否是{@link #appendTextFade}开始的流式显示，显示完已有文字后等待继续追加，
+     * 直到{@link #completeTextFade}才结束
+     */
+    private boolean isFadeStreaming = false;
+
+    private int mRevealMode = REVEAL_MODE_FRAME;
+
+    /**
+     * 当前这次显示使用的方式
+     */
+    private int mActiveRevealMode = REVEAL_MODE_FRAME;
+
+    private final RevealProgress mRevealProgress = new RevealProgress();
+
+    /**
+     * 所有FadeTextView共用的调度器
+     */
+    private final FadeScheduler mScheduler = FadeScheduler.getInstance();
+
+    /**
+     * 每帧执行一次的显示任务
+     */
+    private final FadeScheduler.FrameClient mFrameClient = new FadeScheduler.FrameClient() {
+        @Override
+        public boolean onFadeFrame(long frameTimeMillis) {
+            return doFrameFade(frameTimeMillis);
+        }
+    };
+
+    /**
+     * 逐帧显示是否在等待帧回调
+     */
+    private boolean isFrameFadeRuning = false;
+
+    /**
+     * {@link #REVEAL_MODE_CLIP}模式下是否只绘制已显示的部分
+     */
+    private boolean isClipRevealing = false;
+
+    /**
+     * {@link #REVEAL_MODE_ALPHA}模式下最后显示的字是否逐渐淡入
+     */
+    private boolean isAlphaRevealing = false;
+
+    private long mFadeDuration = DEFAULT_FADE_DURATION;
+
+    /**
+     * 最近一帧的时间，绘制时用来计算淡入的进度
+     */
+    private long mFrameTime;
+
+    /**
+     * {@link #REVEAL_MODE_LONG_TEXT}模式下是否由自己分行绘制
+     */
+    private boolean isLongTextRevealing = false;
+
+    private IncrementalLineBreaker mLineBreaker;
+
+    private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+
+    private final Rect mClipBounds = new Rect();
 
     private boolean isFadeRuning = false;
 
     private FadeTextViewAnimListener mFadeTextViewAnimListener;
 
+    private int mReplacePolicy = REPLACE_POLICY_IGNORE;
+
+    private int mQueueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    /**
+     * {@link #REPLACE_POLICY_QUEUE}下等待显示的文字
+     */
+    private final ArrayDeque<PendingFade> mFadeQueue = new ArrayDeque<>();
+
+    /**
+     * 每次开始或取消显示时加一，已经发出的任务和消息发现不一致时直接放弃
+     */
+    private volatile int mFadeGeneration = 0;
+
+    /**
+     * 最近一次提交到后台的任务，取消时从队列中移除
+     */
+    private Runnable mFadeTask;
+
+    /**
+     * {@link #REVEAL_MODE_HANDLER}下最近一次延迟执行的下一步，在后台线程中设置
+     */
+    private volatile Runnable mFadeStep;
+
+    private int mRevealUnit = REVEAL_UNIT_CHAR;
+
+    /**
+     * 当前文字每个显示单位的结束位置，为null时逐字显示
+     */
+    private int[] mRevealBoundaries;
+
+    /**
+     * 正在后台划分显示单位，完成后才开始显示
+     */
+    private boolean isBoundaryPending = false;
+
+    /**
+     * 共用的排版缓存，为null时不使用
+     */
+    private TextLayoutCache mLayoutCache;
+
+    /**
+     * 使用缓存排版的完整文字，为null时由TextView自己排版
+     */
+    private String mCachedText;
+
+    /**
+     * 最近一次测量时从缓存中取得的排版结果
+     */
+    private Layout mCachedLayout;
+
+    /**
+     * 正在设置逐个显示的文字，用来区分外部直接调用的setText
+     */
+    private boolean isSettingFadeText = false;
+
+    /**
+     * 这次显示从第几个字开始，恢复保存的进度时不为0
+     */
+    private int mResumeIndex = 0;
+
+    /**
+     * 每次显示重复使用的性能数据，只在设置了回调时记录
+     */
+    private final FadeRevealMetrics mMetrics = new FadeRevealMetrics();
+
+    private FadeRevealMetrics.Listener mMetricsListener;
+
+    /**
+     * {@link #REVEAL_MODE_HANDLER}开始显示的时间，用来计算每一步应该显示的时间
+     */
+    private long mHandlerStartTime;
+
+    /**
+     * 显示完成后的结束效果，为null时直接结束
+     */
+    private FadeEndEffect mEndEffect;
+
+    /**
+     * 结束效果是否正在执行
+     */
+    private boolean isEndEffectRunning = false;
+
+    private final FadeEndEffect.Listener mEndEffectListener = new FadeEndEffect.Listener() {
+        @Override
+        public void onEffectEnd() {
+            if (isEndEffectRunning) {
+                isEndEffectRunning = false;
+                onFadeFinished();
+            }
+        }
+    };
+
+    /**
+     * 开始显示前的延迟
+     */
+    private long mStartDelay = 0;
+
+    private final Rect mVisibleRect = new Rect();
+
+    private int mHiddenPolicy = HIDDEN_POLICY_PAUSE;
+
+    private int mReturnPolicy = RETURN_POLICY_RESUME;
+
+    /**
+     * 是否因为不可见而暂停
+     */
+    private boolean isRevealPaused = false;
+
+    /**
+     * 还没有布局或者不可见时停止帧回调，不再每帧检查，下一次绘制时重新注册
+     */
+    private boolean isFrameFadeWaiting = false;
+
+    /**
+     * {@link #REVEAL_MODE_HANDLER}离开窗口时已显示的字数，重新添加到窗口后从这里继续
+     */
+    private int mPausedFadeIndex = -1;
+
     public FadeTextView(Context context) {
         this(context, null);
     }
@@ -70,32 +388,66 @@ public class FadeTextView extends android.support.v7.widget.AppCompatTextView {
      * init
      */
     private void init() {
-        mHandler = new FadeHandler(this);
+        mEndEffect = new ScaleEndEffect();
+        mLayoutCache = TextLayoutCache.getDefault();
+    }
+
+    /**
+     * 设置共用的排版缓存，默认是{@link TextLayoutCache#getDefault()}，在下一次{@link #setTextFade}时生效
+     * <p>
+     * 只在{@link #REVEAL_MODE_CLIP}和{@link #REVEAL_MODE_ALPHA}下使用，测量和绘制都直接使用缓存的排版结果，
+     * 列表中重新绑定相同的文字时不再测量和分行。TextView自己排版过之后（例如显示过带样式的文字），
+     * setText时TextView仍会为新文字重新排版一次，缓存只省去测量和绘制时的排版。
+     * 其它模式每一步的文字都不同，仍由TextView自己排版
+     * <p>
+     * 使用缓存时{@link #getLayout()}可能为null，{@link #getBaseline()}和{@link #getLineCount()}按缓存的结果计算；
+     * 设置了省略、行数或宽度限制、ems、图片或者非默认的文字方向时不使用缓存
+     *
+     * @param layoutCache 为null时不使用缓存
+     */
+    public void setLayoutCache(@Nullable TextLayoutCache layoutCache) {
+        this.mLayoutCache = layoutCache;
+    }
+
+    /**
+     * 设置显示完成后的结束效果，默认是{@link ScaleEndEffect}
+     *
+     * @param endEffect 结束效果，为null时不执行任何效果
+     */
+    public void setEndEffect(@Nullable FadeEndEffect endEffect) {
+        if (isEndEffectRunning) {
+            mEndEffect.end();
+        }
+        this.mEndEffect = endEffect;
+    }
+
+    @Nullable
+    public FadeEndEffect getEndEffect() {
+        return mEndEffect;
     }
 
     private void startAnim() {
-        //组合动画
-        AnimatorSet animatorSet = new AnimatorSet();
-        ObjectAnimator scaleX = ObjectAnimator.ofFloat(this, "scaleX", 1, 1.25f,1);
-        ObjectAnimator scaleY = ObjectAnimator.ofFloat(this, "scaleY", 1, 1.25f,1);
-
-        animatorSet.setDuration(200);
-        animatorSet.setInterpolator(new DecelerateInterpolator());
-        //两个动画同时开始
-        animatorSet.play(scaleX).with(scaleY);
-        animatorSet.start();
-
-        animatorSet.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                super.onAnimationEnd(animation);
+        reportMetrics(FadeRevealMetrics.END_FINISHED);
+        if (mEndEffect == null) {
+            onFadeFinished();
+            return;
+        }
+        isEndEffectRunning = true;
+        mEndEffect.start(this, mEndEffectListener);
+    }
 
-                resetFadeRuning();
-                if (mFadeTextViewAnimListener != null) {
-                    mFadeTextViewAnimListener.onAnimFinish();
-                }
-            }
-        });
+    /**
+     * 一次显示完整结束，回调后开始显示排队的文字
+     */
+    private void onFadeFinished() {
+        resetFadeRuning();
+        if (mFadeTextViewAnimListener != null) {
+            mFadeTextViewAnimListener.onAnimFinish();
+        }
+        PendingFade next = mFadeQueue.poll();
+        if (next != null) {
+            startTextFade(next.text, next.listener);
+        }
     }
 
 
@@ -104,7 +456,7 @@ public class FadeTextView extends android.support.v7.widget.AppCompatTextView {
      * @param text
      * @param fadeTextViewAnimListener 动画执行的回调方法，可以为null
      */
-    public void setTextFade(String text,FadeTextViewAnimListener fadeTextViewAnimListener) {
+    public void setTextFade(CharSequence text,FadeTextViewAnimListener fadeTextViewAnimListener) {
         if (TextUtils.isEmpty(text)) {
             if (DEBUG) {
                 Log.i(TAG, "FadeTextView text is not allowed empty ");
@@ -112,101 +464,1488 @@ public class FadeTextView extends android.support.v7.widget.AppCompatTextView {
             return;
         }
         if (isFadeRuning) {
-            if (DEBUG) {
-                Log.i(TAG, "FadeTextView fade is running ");
+            switch (mReplacePolicy) {
+                case REPLACE_POLICY_LATEST:
+                    cancelTextFade();
+                    break;
+                case REPLACE_POLICY_SKIP_TO_END:
+                    skipTextFade();
+                    break;
+                case REPLACE_POLICY_QUEUE:
+                    if (mFadeQueue.size() >= mQueueCapacity) {
+                        mFadeQueue.poll();
+                    }
+                    mFadeQueue.offer(new PendingFade(text, fadeTextViewAnimListener));
+                    return;
+                default:
+                    if (DEBUG) {
+                        Log.i(TAG, "FadeTextView fade is running ");
+                    }
+                    return;
+            }
+            if (isFadeRuning) {
+                // 跳过时回调里又开始了新的显示
+                mFadeQueue.offer(new PendingFade(text, fadeTextViewAnimListener));
+                return;
             }
-            return;
         }
+        startTextFade(text, fadeTextViewAnimListener);
+    }
+
+    private void startTextFade(CharSequence text, FadeTextViewAnimListener fadeTextViewAnimListener) {
+        startTextFade(text, fadeTextViewAnimListener, 0);
+    }
+
+    /**
+     * @param startIndex 从第几个字开始显示，之前的字直接显示出来
+     */
+    private void startTextFade(CharSequence text, FadeTextViewAnimListener fadeTextViewAnimListener, int startIndex) {
+        mFadeGeneration++;
         this.mFadeTextViewAnimListener = fadeTextViewAnimListener;
+        prepareFadeText(text);
+        mResumeIndex = startIndex;
+        isFadeRuning = true;
+        if (mRevealUnit != REVEAL_UNIT_CHAR) {
+            // 划分完显示单位再开始，之前只显示已经显示过的部分
+            setVisibleLength(startIndex);
+            computeRevealBoundaries(fadeText.toString());
+            return;
+        }
+        beginReveal();
+    }
+
+    /**
+     * 设置要逐个显示的文字，还没有开始显示
+     */
+    private void prepareFadeText(CharSequence text) {
         this.fadeText = text;
         this.length = fadeText.length();
+        resetFadeChars(length);
+        TextUtils.getChars(fadeText, 0, length, fadeChars, 0);
 
-        startFade(0);
-        isFadeRuning = true;
+        isFadeStreaming = false;
+        mPendingLength = 0;
+        mActiveRevealMode = getRevealModeFor(text);
+        mFadeSpannable = text instanceof Spanned ? new SpannableStringBuilder(text) : null;
+        mRevealBoundaries = null;
+        mCachedText = canUseLayoutCache() ? fadeText.toString() : null;
+        mCachedLayout = null;
     }
 
-    private void resetFadeRuning() {
-        isFadeRuning = false;
+    /**
+     * 准备从头写入{@link #fadeChars}
+     * <p>
+     * 外面拿到的文字还引用着旧数组时换一个新的，不能改掉别人手里的文字
+     *
+     * @param capacity 至少需要的长度
+     */
+    private void resetFadeChars(int capacity) {
+        if (isFadeCharsShared) {
+            fadeChars = null;
+            isFadeCharsShared = false;
+        }
+        if (fadeChars == null || fadeChars.length < capacity) {
+            fadeChars = new char[capacity];
+        }
     }
 
-
-    @Override
-    protected void onDetachedFromWindow() {
-        super.onDetachedFromWindow();
-        if (!executorService.isShutdown()) {
-            executorService.shutdown();
+    private void beginReveal() {
+        if (mActiveRevealMode != REVEAL_MODE_HANDLER) {
+            startFrameFade();
+        } else {
+            // 数组已经换成新的文字，第一步在后台线程之后才会执行，
+            // 这里马上设置，不能让旧的排版结果配着新的文字绘制
+            setVisibleLength(mResumeIndex);
+            mHandlerStartTime = mScheduler.now() - (long) mResumeIndex * DEFAULT_DURATION;
+            startMetrics(mScheduler.now());
+            startFade(mResumeIndex);
         }
     }
 
     /**
-     * 开始逐个显示
+     * 保存当前的显示进度，列表中可以在回收时为每一项保存，重新绑定时用{@link #restoreRevealState}恢复。
+     * 只读取当前的状态，不会影响正在进行的显示
      *
-     * @param index
+     * @return 没有显示过文字时返回null
      */
-    private void startFade(final int index) {
+    @Nullable
+    public FadeRevealState saveRevealState() {
+        if (!isFadeRuning) {
+            if (length == 0) {
+                return null;
+            }
+            return new FadeRevealState(copyFadeText(), length, true);
+        }
+        return new FadeRevealState(copyFadeText(), getRevealedLength(), isEndEffectRunning);
+    }
 
-        executorService.execute(new Runnable() {
-            @Override
-            public void run() {
-                //截取要填充的字符串
-                final String subStr = fadeText.substring(0, index);
+    /**
+     * 当前的全部文字，包括还在缓冲区中等待提交的部分
+     */
+    private CharSequence copyFadeText() {
+        if (mFadeSpannable != null) {
+            SpannableStringBuilder text = new SpannableStringBuilder(mFadeSpannable);
+            if (mPendingLength > 0) {
+                text.append(mPendingSpannable);
+            }
+            return text;
+        }
+        if (fadeText != null && length == fadeText.length() && mPendingLength == 0) {
+            // 没有追加过文字
+            return fadeText;
+        }
+        StringBuilder text = new StringBuilder(length + mPendingLength);
+        text.append(fadeChars, 0, length);
+        if (mPendingLength > 0) {
+            text.append(mPendingChars, 0, mPendingLength);
+        }
+        return text.toString();
+    }
 
-                post(new Runnable() {
-                    @Override
-                    public void run() {
-                        setText(subStr);
+    /**
+     * 恢复保存的显示进度：取消当前的显示和排队的文字，已经显示过的部分直接显示，从保存的位置继续显示。
+     * 已经显示完的直接显示全部文字，不执行结束效果，也不回调
+     * <p>
+     * 流式显示恢复后作为普通显示继续显示保存时已经收到的文字
+     *
+     * @param state                    {@link #saveRevealState()}保存的进度，为null时只取消当前的显示
+     * @param fadeTextViewAnimListener 继续显示结束时的回调，可以为null
+     */
+    public void restoreRevealState(@Nullable FadeRevealState state, FadeTextViewAnimListener fadeTextViewAnimListener) {
+        cancelTextFade();
+        if (state == null || TextUtils.isEmpty(state.getText())) {
+            return;
+        }
+        if (state.isFinished()) {
+            mFadeGeneration++;
+            prepareFadeText(state.getText());
+            setVisibleLength(length);
+            return;
+        }
+        startTextFade(state.getText(), fadeTextViewAnimListener, state.getIndex());
+    }
+
+    /**
+     * 当前已经显示出来的字数
+     */
+    int getRevealedLength() {
+        if (isBoundaryPending) {
+            return mResumeIndex;
+        }
+        // 旧的显示方式没有记录进度，以已经显示出来的字数为准
+        return mActiveRevealMode == REVEAL_MODE_HANDLER ? super.getText().length() : mRevealProgress.getIndex();
+    }
+
+    @Override
+    public Parcelable onSaveInstanceState() {
+        Parcelable superState = super.onSaveInstanceState();
+        if (!isFadeRuning) {
+            // 没有正在进行的显示，文字是否保存由TextView自己的freezesText决定
+            return superState;
+        }
+        FadeRevealState revealState = saveRevealState();
+        SavedState savedState = new SavedState(superState);
+        savedState.revealState = revealState;
+        return savedState;
+    }
+
+    @Override
+    public void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        FadeRevealState revealState = savedState.revealState;
+        // 重建后已经重新开始了同样的文字时，沿用它的回调
+        FadeTextViewAnimListener listener = isFadeRuning && TextUtils.equals(fadeText, revealState.getText())
+                ? mFadeTextViewAnimListener : null;
+        restoreRevealState(revealState, listener);
+    }
+
+    /**
+     * 设置每次显示结束时的性能数据回调，为null时不记录
+     * <p>
+     * 记录时只修改预先分配的计数，不创建对象；测量耗时只在设置了回调时进行
+     */
+    public void setRevealMetricsListener(@Nullable FadeRevealMetrics.Listener listener) {
+        this.mMetricsListener = listener;
+    }
+
+    private void startMetrics(long startTime) {
+        if (mMetricsListener != null) {
+            mMetrics.start(mActiveRevealMode, startTime);
+        }
+    }
+
+    private boolean isRecordingMetrics() {
+        return mMetricsListener != null && mMetrics.isRunning();
+    }
+
+    /**
+     * 一次显示结束，回调这次显示的性能数据
+     */
+    private void reportMetrics(int endReason) {
+        if (!isRecordingMetrics()) {
+            return;
+        }
+        long expected = (long) length * DEFAULT_DURATION;
+        if (mActiveRevealMode == REVEAL_MODE_ALPHA) {
+            expected += mFadeDuration;
+        }
+        mMetrics.finish(mScheduler.now(), length, expected, endReason);
+        mMetricsListener.onRevealMetrics(this, mMetrics);
+    }
+
+    /**
+     * 在后台线程划分一次显示单位，之后的显示只查找结果，不再分析文字
+     */
+    private void computeRevealBoundaries(final String text) {
+        final int generation = mFadeGeneration;
+        final int unit = mRevealUnit;
+        isBoundaryPending = true;
+        mFadeTask = new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mFadeGeneration) {
+                    return;
+                }
+                final int[] boundaries;
+                if (unit == REVEAL_UNIT_WORD) {
+                    boundaries = RevealBoundaries.forWords(text);
+                } else if (unit == REVEAL_UNIT_LINE) {
+                    boundaries = RevealBoundaries.forLines(text);
+                } else {
+                    boundaries = RevealBoundaries.forGraphemes(text);
+                }
+                mScheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mFadeGeneration && isBoundaryPending) {
+                            onRevealBoundariesReady(boundaries);
+                        }
+                    }
+                });
+            }
+        };
+        mScheduler.execute(mFadeTask);
+    }
+
+    private void onRevealBoundariesReady(int[] boundaries) {
+        isBoundaryPending = false;
+        mFadeTask = null;
+        mRevealBoundaries = boundaries;
+        if (ViewCompat.isAttachedToWindow(this)) {
+            beginReveal();
+            // 等待期间追加的文字接在这次显示的后面
+            flushPendingText();
+        } else if (mActiveRevealMode == REVEAL_MODE_HANDLER) {
+            // 重新添加到窗口时从开始的位置显示
+            mPausedFadeIndex = mResumeIndex;
+        } else {
+            // 离开窗口时不注册帧回调，与离开窗口时一样暂停，重新添加到窗口时继续
+            beginReveal();
+            flushPendingText();
+            isRevealPaused = true;
+            mRevealProgress.pause(mScheduler.now());
+        }
+    }
+
+    /**
+     * 设置逐个显示的单位，在下一次{@link #setTextFade}时生效。
+     * 划分在后台线程进行，每段文字只划分一次；{@link #appendTextFade}追加的文字仍然逐字显示
+     *
+     * @param revealUnit {@link #REVEAL_UNIT_CHAR}、{@link #REVEAL_UNIT_GRAPHEME}、
+     *                   {@link #REVEAL_UNIT_WORD} 或 {@link #REVEAL_UNIT_LINE}
+     */
+    public void setRevealUnit(int revealUnit) {
+        this.mRevealUnit = revealUnit;
+    }
+
+    public int getRevealUnit() {
+        return mRevealUnit;
+    }
+
+    /**
+     * index之后第一个显示单位的结束位置
+     */
+    private int nextRevealIndex(int index) {
+        int[] boundaries = mRevealBoundaries;
+        if (boundaries == null || index >= boundaries[boundaries.length - 1]) {
+            return index + 1;
+        }
+        int i = Arrays.binarySearch(boundaries, index + 1);
+        return i >= 0 ? index + 1 : boundaries[-i - 1];
+    }
+
+    /**
+     * 只有只排版一次的显示方式、普通文字，并且没有省略、行数限制、宽度限制、图片、非默认的文字方向等
+     * 需要TextView自己处理的属性时才使用共用的排版结果。读取行数等属性需要API 16，更低的版本不使用缓存
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private boolean canUseLayoutCache() {
+        if (mLayoutCache == null || mFadeSpannable != null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return false;
+        }
+        if (mActiveRevealMode != REVEAL_MODE_CLIP && mActiveRevealMode != REVEAL_MODE_ALPHA) {
+            return false;
+        }
+        if (getEllipsize() != null || getTransformationMethod() != null || getMovementMethod() != null
+                || getMaxLines() != Integer.MAX_VALUE || getMinLines() > 1) {
+            return false;
+        }
+        // 按字数设置的宽度（ems）读出来是-1
+        if (getMaxWidth() != Integer.MAX_VALUE || getMinWidth() != 0 || getMinHeight() > 0) {
+            return false;
+        }
+        // 缓存按默认的方向排版：第一个强方向字符决定，默认从左到右
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                && (getTextDirection() != TEXT_DIRECTION_FIRST_STRONG || getLayoutDirection() != LAYOUT_DIRECTION_LTR)) {
+            return false;
+        }
+        for (Drawable drawable : getCompoundDrawables()) {
+            if (drawable != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 不再使用缓存的排版结果，交给TextView自己排版
+     */
+    private void dropCachedLayout() {
+        if (mCachedText != null) {
+            mCachedText = null;
+            mCachedLayout = null;
+            requestLayout();
+        }
+    }
+
+    /**
+     * 使用缓存的排版结果时TextView自己没有排版，{@link #getLayout()}为null，基线从缓存的排版结果计算，
+     * 保证LinearLayout、ConstraintLayout等按基线对齐时位置正确
+     */
+    @Override
+    public int getBaseline() {
+        Layout layout = mCachedLayout;
+        if (layout == null) {
+            return super.getBaseline();
+        }
+        return getExtendedPaddingTop() + getTextVerticalOffset(layout) + layout.getLineBaseline(0);
+    }
+
+    @Override
+    public int getLineCount() {
+        return mCachedLayout != null ? mCachedLayout.getLineCount() : super.getLineCount();
+    }
+
+    @Override
+    protected void onTextChanged(CharSequence text, int start, int lengthBefore, int lengthAfter) {
+        super.onTextChanged(text, start, lengthBefore, lengthAfter);
+        if (!isSettingFadeText) {
+            // 外部直接设置了文字，缓存的排版结果不再对应
+            dropCachedLayout();
+            isFadeCharsShown = false;
+        }
+    }
+
+    /**
+     * 逐个显示时返回的文字直接引用内部复用的字符数组，标记下来，下一次显示时不再覆盖
+     */
+    @Override
+    public CharSequence getText() {
+        if (isFadeCharsShown) {
+            isFadeCharsShared = true;
+        }
+        return super.getText();
+    }
+
+    /**
+     * 带样式的文字只能使用只排版一次的方式显示，其它方式每一步都要截取并拷贝全部样式
+     */
+    private int getRevealModeFor(CharSequence text) {
+        if (text instanceof Spanned && mRevealMode != REVEAL_MODE_ALPHA) {
+            return REVEAL_MODE_CLIP;
+        }
+        return mRevealMode;
+    }
+
+    /**
+     * 设置开始显示前的延迟，在下一次显示时生效
+     */
+    public void setFadeStartDelay(long startDelay) {
+        this.mStartDelay = startDelay;
+    }
+
+    /**
+     * 所有FadeTextView依次开始显示时至少间隔的时间，列表中同时绑定的多行会错开依次出现
+     *
+     * @param staggerDelay 间隔时间，0表示不错开
+     */
+    public static void setFadeStaggerDelay(long staggerDelay) {
+        FadeScheduler.getInstance().setStaggerDelay(staggerDelay);
+    }
+
+    /**
+     * 所有FadeTextView每帧最多一共显示的字数，超出的部分顺延到之后的帧，避免很多行同时显示时掉帧
+     *
+     * @param frameBudget 每帧最多显示的字数，小于等于0时不限制
+     */
+    public static void setFadeFrameBudget(int frameBudget) {
+        FadeScheduler.getInstance().setFrameBudget(frameBudget);
+    }
+
+    /**
+     * 设置不在屏幕上、不可见或离开窗口时的处理方式。
+     * {@link #REVEAL_MODE_HANDLER}只在离开窗口时处理
+     *
+     * @param hiddenPolicy {@link #HIDDEN_POLICY_PAUSE} 或 {@link #HIDDEN_POLICY_FAST_FORWARD}
+     */
+    public void setHiddenPolicy(int hiddenPolicy) {
+        this.mHiddenPolicy = hiddenPolicy;
+    }
+
+    /**
+     * 设置暂停后重新可见时的处理方式
+     *
+     * @param returnPolicy {@link #RETURN_POLICY_RESUME}、{@link #RETURN_POLICY_JUMP_TO_END}
+     *                     或 {@link #RETURN_POLICY_RESTART}
+     */
+    public void setReturnPolicy(int returnPolicy) {
+        this.mReturnPolicy = returnPolicy;
+    }
+
+    /**
+     * 设置正在显示时又调用{@link #setTextFade}的处理方式
+     *
+     * @param replacePolicy {@link #REPLACE_POLICY_IGNORE}、{@link #REPLACE_POLICY_LATEST}、
+     *                      {@link #REPLACE_POLICY_QUEUE} 或 {@link #REPLACE_POLICY_SKIP_TO_END}
+     */
+    public void setReplacePolicy(int replacePolicy) {
+        this.mReplacePolicy = replacePolicy;
+        if (replacePolicy != REPLACE_POLICY_QUEUE) {
+            mFadeQueue.clear();
+        }
+    }
+
+    public int getReplacePolicy() {
+        return mReplacePolicy;
+    }
+
+    /**
+     * 设置{@link #REPLACE_POLICY_QUEUE}下最多排队的文字数
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.mQueueCapacity = Math.max(1, queueCapacity);
+        while (mFadeQueue.size() > mQueueCapacity) {
+            mFadeQueue.poll();
+        }
+    }
+
+    /**
+     * 取消正在进行的显示和排队的文字，已经显示出来的文字保持不变，不会回调动画结束
+     */
+    public void cancelTextFade() {
+        mFadeQueue.clear();
+        if (!isFadeRuning) {
+            return;
+        }
+        // 旧的显示方式没有记录进度，以已经显示出来的字数为准
+        reportMetrics(FadeRevealMetrics.END_CANCELLED);
+        int revealed = getRevealedLength();
+        stopFade();
+        setVisibleLength(revealed);
+    }
+
+    /**
+     * 立即显示完当前的全部文字并回调动画结束，不执行结束动画，之后继续显示排队的文字
+     */
+    public void skipTextFade() {
+        if (!isFadeRuning) {
+            return;
+        }
+        flushPendingText();
+        reportMetrics(FadeRevealMetrics.END_SKIPPED);
+        stopFade();
+        setVisibleLength(length);
+        onFadeFinished();
+    }
+
+    /**
+     * 停止所有与当前显示有关的工作：移除延迟的下一步、后台任务和帧回调，取消结束动画
+     */
+    private void stopFade() {
+        mFadeGeneration++;
+        removeFadeStep();
+        if (mFadeTask != null) {
+            mScheduler.cancel(mFadeTask);
+            mFadeTask = null;
+        }
+        mScheduler.unregister(mFrameClient);
+        if (isEndEffectRunning) {
+            isEndEffectRunning = false;
+            mEndEffect.cancel();
+        }
+        isFrameFadeRuning = false;
+        isFrameFadeWaiting = false;
+        isBoundaryPending = false;
+        isClipRevealing = false;
+        isAlphaRevealing = false;
+        isLongTextRevealing = false;
+        isFadeStreaming = false;
+        mPendingLength = 0;
+        if (mPendingSpannable != null) {
+            mPendingSpannable.clear();
+        }
+        isRevealPaused = false;
+        mPausedFadeIndex = -1;
+        isFadeRuning = false;
+    }
+
+    /**
+     * 在正在进行的显示后面追加文字，已显示的部分不会重新显示，也不会重新拷贝或排版已经显示完的行
+     * <p>
+     * 没有正在进行的显示时，以这段文字开始一次新的流式显示，显示完已有的文字后等待继续追加，
+     * 调用{@link #completeTextFade}后结束。同一帧内的多次追加会合并成一次更新，
+     * 流式显示推荐使用{@link #REVEAL_MODE_LONG_TEXT}，其它模式每次更新仍会重新排版。
+     * {@link #REVEAL_MODE_HANDLER}的显示追加后从已显示的位置改为逐帧显示
+     *
+     * @param text 追加的文字
+     */
+    public void appendTextFade(CharSequence text) {
+        if (TextUtils.isEmpty(text)) {
+            return;
+        }
+        if (!isFadeRuning) {
+            this.mFadeTextViewAnimListener = null;
+            this.fadeText = null;
+            this.length = 0;
+            resetFadeChars(text.length());
+            mResumeIndex = 0;
+            mCachedText = null;
+            mCachedLayout = null;
+            isFadeStreaming = true;
+            mPendingLength = 0;
+            mActiveRevealMode = mRevealMode == REVEAL_MODE_HANDLER ? REVEAL_MODE_FRAME : getRevealModeFor(text);
+            mFadeSpannable = text instanceof Spanned ? new SpannableStringBuilder() : null;
+            startFrameFade();
+            isFadeRuning = true;
+        }
+        if (mActiveRevealMode == REVEAL_MODE_HANDLER) {
+            switchToFrameFade();
+        }
+        int count = text.length();
+        if (isBoundaryPending) {
+            // 还没有开始显示，全部放在缓冲区中，划分完成开始显示时一起提交
+            ensurePendingCapacity(mPendingLength + count);
+        } else if (mPendingLength + count > PENDING_CAPACITY) {
+            flushPendingText();
+        }
+        if (count > PENDING_CAPACITY && !isBoundaryPending) {
+            if (mFadeSpannable != null) {
+                mFadeSpannable.append(text);
+            }
+            appendFadeChars(text, 0, count);
+        } else {
+            ensurePendingCapacity(mPendingLength + count);
+            TextUtils.getChars(text, 0, count, mPendingChars, mPendingLength);
+            mPendingLength += count;
+            if (mFadeSpannable != null) {
+                if (mPendingSpannable == null) {
+                    mPendingSpannable = new SpannableStringBuilder();
+                }
+                mPendingSpannable.append(text);
+            }
+        }
+        if (!isFrameFadeRuning && !isBoundaryPending) {
+            scheduleFrameFade();
+        }
+    }
+
+    /**
+     * {@link #REVEAL_MODE_HANDLER}的每一步在后台线程读取长度，可能已经决定结束而看不到追加的文字，
+     * 正在进行的显示改为从已显示的位置逐帧继续，之前的每一步全部作废
+     */
+    private void switchToFrameFade() {
+        mActiveRevealMode = REVEAL_MODE_FRAME;
+        if (isBoundaryPending) {
+            // 还没有开始，划分完成后直接逐帧显示
+            return;
+        }
+        int index = mPausedFadeIndex >= 0 ? mPausedFadeIndex : super.getText().length();
+        mFadeGeneration++;
+        removeFadeStep();
+        if (mFadeTask != null) {
+            mScheduler.cancel(mFadeTask);
+            mFadeTask = null;
+        }
+        mPausedFadeIndex = -1;
+        mResumeIndex = index;
+        startFrameFade(mScheduler.now());
+    }
+
+    /**
+     * 缓冲区一般不超过{@link #PENDING_CAPACITY}，只有等待划分显示单位时才扩容
+     */
+    private void ensurePendingCapacity(int capacity) {
+        if (mPendingChars == null) {
+            mPendingChars = new char[Math.max(capacity, PENDING_CAPACITY)];
+        } else if (mPendingChars.length < capacity) {
+            char[] chars = new char[Math.max(capacity, mPendingChars.length * 2)];
+            System.arraycopy(mPendingChars, 0, chars, 0, mPendingLength);
+            mPendingChars = chars;
+        }
+    }
+
+    /**
+     * 结束{@link #appendTextFade}开始的流式显示，已追加的文字全部显示完后执行结束动画
+     *
+     * @param fadeTextViewAnimListener 动画执行的回调方法，可以为null
+     */
+    public void completeTextFade(FadeTextViewAnimListener fadeTextViewAnimListener) {
+        if (!isFadeStreaming) {
+            return;
+        }
+        this.mFadeTextViewAnimListener = fadeTextViewAnimListener;
+        isFadeStreaming = false;
+        if (!isFrameFadeRuning) {
+            scheduleFrameFade();
+        }
+    }
+
+    /**
+     * 把缓冲区中的文字提交到正在显示的文字中
+     */
+    private void flushPendingText() {
+        if (mPendingLength > 0) {
+            int count = mPendingLength;
+            mPendingLength = 0;
+            if (mFadeSpannable != null) {
+                mFadeSpannable.append(mPendingSpannable);
+                mPendingSpannable.clear();
+            }
+            appendFadeChars(mPendingChars, count);
+        }
+    }
+
+    private void appendFadeChars(CharSequence text, int start, int end) {
+        int oldLength = length;
+        ensureFadeCapacity(oldLength + end - start);
+        TextUtils.getChars(text, start, end, fadeChars, oldLength);
+        onFadeCharsAppended(oldLength + end - start);
+    }
+
+    private void appendFadeChars(char[] text, int count) {
+        int oldLength = length;
+        ensureFadeCapacity(oldLength + count);
+        System.arraycopy(text, 0, fadeChars, oldLength, count);
+        onFadeCharsAppended(oldLength + count);
+    }
+
+    /**
+     * 按倍数扩容，追加的总拷贝量与文字长度成线性关系
+     */
+    private void ensureFadeCapacity(int capacity) {
+        if (fadeChars == null) {
+            fadeChars = new char[Math.max(capacity, 16)];
+        } else if (fadeChars.length < capacity) {
+            char[] chars = new char[Math.max(capacity, fadeChars.length * 2)];
+            System.arraycopy(fadeChars, 0, chars, 0, length);
+            fadeChars = chars;
+        }
+    }
+
+    private void onFadeCharsAppended(int newLength) {
+        this.length = newLength;
+        dropCachedLayout();
+        mRevealProgress.append(newLength, mScheduler.now());
+        if (isClipRevealing) {
+            setVisibleLength(newLength);
+        } else if (isLongTextRevealing) {
+            mLineBreaker.append(fadeChars, newLength);
+            mLineBreaker.breakTo(mRevealProgress.getIndex());
+        }
+    }
+
+    /**
+     * 设置逐个显示的方式，在下一次{@link #setTextFade}时生效
+     *
+     * @param revealMode {@link #REVEAL_MODE_FRAME}、{@link #REVEAL_MODE_HANDLER}、{@link #REVEAL_MODE_CLIP}、
+     *                   {@link #REVEAL_MODE_LONG_TEXT} 或 {@link #REVEAL_MODE_ALPHA}
+     */
+    public void setRevealMode(int revealMode) {
+        this.mRevealMode = revealMode;
+    }
+
+    public int getRevealMode() {
+        return mRevealMode;
+    }
+
+    private void resetFadeRuning() {
+        isFadeRuning = false;
+    }
+
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (isFrameFadeRuning) {
+            // 重新可见的处理在下一帧进行
+            isFrameFadeWaiting = false;
+            mScheduler.register(mFrameClient);
+        } else if (mPausedFadeIndex >= 0) {
+            resumeHandlerFade();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (isEndEffectRunning) {
+            // 结束效果直接结束，不再持有当前View，回调中可能开始排队的下一次显示
+            mEndEffect.end();
+        }
+        // 调度器是全局的，离开窗口时不再持有当前View，重新添加到窗口后继续
+        mScheduler.unregister(mFrameClient);
+        if (!isFadeRuning) {
+            return;
+        }
+        if (mHiddenPolicy == HIDDEN_POLICY_FAST_FORWARD) {
+            fastForwardReveal();
+        } else if (mActiveRevealMode == REVEAL_MODE_HANDLER) {
+            pauseHandlerFade();
+        } else if (isFrameFadeRuning && !isRevealPaused) {
+            isRevealPaused = true;
+            mRevealProgress.pause(mScheduler.now());
+        }
+    }
+
+    /**
+     * 立即显示全部文字，{@link #REVEAL_MODE_ALPHA}下所有字都视为已经完全淡入，而不是从现在开始淡入
+     */
+    private void jumpRevealToEnd(long now) {
+        mRevealProgress.jumpToEnd(isAlphaRevealing ? now - mFadeDuration : now);
+        mFrameTime = now;
+    }
+
+    /**
+     * 立即显示完已有的文字，流式显示时继续等待追加
+     */
+    private void fastForwardReveal() {
+        if (!isFadeStreaming) {
+            skipTextFade();
+            return;
+        }
+        flushPendingText();
+        int oldIndex = mRevealProgress.getIndex();
+        jumpRevealToEnd(mScheduler.now());
+        applyRevealIndex(oldIndex, mRevealProgress.getIndex());
+        isRevealPaused = false;
+        isFrameFadeRuning = false;
+        mScheduler.unregister(mFrameClient);
+    }
+
+    /**
+     * {@link #REVEAL_MODE_HANDLER}离开窗口：移除所有消息和任务，记住已显示的位置
+     */
+    private void pauseHandlerFade() {
+        if (isEndEffectRunning || mPausedFadeIndex >= 0 || isBoundaryPending) {
+            return;
+        }
+        mFadeGeneration++;
+        removeFadeStep();
+        if (mFadeTask != null) {
+            mScheduler.cancel(mFadeTask);
+            mFadeTask = null;
+        }
+        mPausedFadeIndex = super.getText().length();
+    }
+
+    /**
+     * {@link #REVEAL_MODE_HANDLER}重新添加到窗口，按{@link #setReturnPolicy}继续
+     */
+    private void resumeHandlerFade() {
+        int index = mPausedFadeIndex;
+        mPausedFadeIndex = -1;
+        if (mReturnPolicy == RETURN_POLICY_JUMP_TO_END) {
+            skipTextFade();
+        } else {
+            mFadeGeneration++;
+            startFade(mReturnPolicy == RETURN_POLICY_RESTART ? 0 : index);
+        }
+    }
+
+    private void recordHandlerUpdate(int index) {
+        if (!isRecordingMetrics()) {
+            return;
+        }
+        // 每一步就是一次更新
+        int chars = index - super.getText().length();
+        mMetrics.onFrame();
+        if (chars > 0) {
+            mMetrics.onUpdate(mScheduler.now(), mHandlerStartTime + (long) index * DEFAULT_DURATION, chars);
+        }
+    }
+
+    private void removeFadeStep() {
+        Runnable fadeStep = mFadeStep;
+        if (fadeStep != null) {
+            mScheduler.removeCallbacks(fadeStep);
+            mFadeStep = null;
+        }
+    }
+
+    /**
+     * 开始逐个显示
+     *
+     * @param index
+     */
+    private void startFade(final int index) {
+        final int generation = mFadeGeneration;
+        mFadeTask = new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mFadeGeneration) {
+                    return;
+                }
+                mScheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mFadeGeneration) {
+                            recordHandlerUpdate(index);
+                            if (!isShowingFadeChars(index)) {
+                                setVisibleLength(index);
+                            }
+                        }
                     }
                 });
-                //每次多截取一个
-                int nextIndex = index;
-                nextIndex++;
+                //每次多截取一个显示单位
+                final int nextIndex = nextRevealIndex(index);
                 //如果还有文字，那么继续开启线程，相当于递归的感觉
                 if (nextIndex <= length) {
-                    Message msg = Message.obtain();
-                    msg.what = MSG_HANDLER_FADE;
-                    msg.arg1 = nextIndex;
-                    msg.obj = subStr;
-                    mHandler.sendMessageDelayed(msg, DEFAULT_DURATION);
+                    mFadeStep = new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == mFadeGeneration) {
+                                startFade(nextIndex);
+                            }
+                        }
+                    };
+                    // 间隔与单位的字数成正比，整体速度与逐字显示相同
+                    mScheduler.postDelayed(mFadeStep, DEFAULT_DURATION * (nextIndex - index));
                 } else {
                     if (DEBUG) {
                         Log.i(TAG, "run index: " + nextIndex + "===length:" + length);
                     }
-                    Message msg = Message.obtain();
-                    msg.what = MSG_HANDLER_ANIM;
-                    mHandler.sendMessageDelayed(msg, DEFAULT_DURATION);
+                    mFadeStep = new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == mFadeGeneration) {
+                                startAnim();
+                            }
+                        }
+                    };
+                    mScheduler.postDelayed(mFadeStep, DEFAULT_DURATION);
+                }
+
+            }
+        };
+        mScheduler.execute(mFadeTask);
+    }
+
+    /**
+     * 当前是否已经显示着{@link #fadeChars}的前index个字
+     */
+    private boolean isShowingFadeChars(int index) {
+        return isFadeCharsShown && super.getText().length() == index;
+    }
+
+    /**
+     * 把显示进度的变化反映到界面上
+     */
+    private void applyRevealIndex(int oldIndex, int index) {
+        if (index == oldIndex) {
+            return;
+        }
+        if (isClipRevealing) {
+            invalidate();
+        } else if (isLongTextRevealing) {
+            breakLongText(index);
+        } else {
+            setVisibleLength(index);
+        }
+    }
+
+    /**
+     * 是否可见并且在屏幕上，测试中可以覆盖
+     */
+    boolean isRevealVisible() {
+        return isShown() && getLocalVisibleRect(mVisibleRect);
+    }
+
+    /**
+     * 显示前index个字
+     * <p>
+     * {@link #setText(char[], int, int)}直接引用字符数组，不会拷贝出新的字符串；
+     * 这样设置的文字被{@link #getText()}返回后，下一次显示会换一个新数组
+     *
+     * @param index 可见的字数
+     */
+    private void setVisibleLength(int index) {
+        if (index < length && !isBoundaryPending) {
+            // 缓存的是完整文字的排版结果
+            dropCachedLayout();
+        }
+        long start = isRecordingMetrics() ? System.nanoTime() : 0;
+        isSettingFadeText = true;
+        if (mFadeSpannable != null) {
+            // 带样式的文字只在开始、结束或取消时设置，不会每一步都截取
+            setText(index >= mFadeSpannable.length() ? mFadeSpannable : mFadeSpannable.subSequence(0, index));
+        } else {
+            setText(fadeChars, 0, index);
+        }
+        isFadeCharsShown = mFadeSpannable == null;
+        isSettingFadeText = false;
+        if (start != 0) {
+            mMetrics.addLayoutTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 开始逐帧显示
+     */
+    private void startFrameFade() {
+        // 继续之前的进度时不再延迟
+        long startTime = mResumeIndex > 0 ? mScheduler.now() : mScheduler.nextStartTime(mStartDelay);
+        startMetrics(startTime);
+        startFrameFade(startTime);
+    }
+
+    /**
+     * 从{@link #mResumeIndex}开始逐帧显示，不重新开始统计
+     */
+    private void startFrameFade(long startTime) {
+        int startIndex = mResumeIndex;
+        mRevealProgress.start(length, DEFAULT_DURATION, startTime);
+        mRevealProgress.setBoundaries(isFadeStreaming ? null : mRevealBoundaries);
+        if (startIndex > 0) {
+            mRevealProgress.resumeAt(startIndex, startTime);
+        }
+        if (mActiveRevealMode == REVEAL_MODE_CLIP || mActiveRevealMode == REVEAL_MODE_ALPHA) {
+            // 只测量和排版一次，之后只重绘
+            isClipRevealing = true;
+            isAlphaRevealing = mActiveRevealMode == REVEAL_MODE_ALPHA;
+            setVisibleLength(length);
+        } else if (mActiveRevealMode == REVEAL_MODE_LONG_TEXT) {
+            mRevealProgress.setMaxStep(LONG_TEXT_MAX_CHARS_PER_FRAME);
+            if (mLineBreaker == null) {
+                mLineBreaker = new IncrementalLineBreaker(new PaintMeasurer(getPaint()));
+            }
+            mLineBreaker.reset(fadeChars, length, getAvailableTextWidth());
+            mLineBreaker.breakTo(startIndex);
+            isLongTextRevealing = true;
+            setVisibleLength(0);
+        } else {
+            setVisibleLength(startIndex);
+        }
+        scheduleFrameFade();
+    }
+
+    /**
+     * 需要逐帧回调：只在添加到窗口时注册到全局的调度器，离开窗口后由{@link #onAttachedToWindow}重新注册，
+     * 调度器不会持有已经离开窗口的View
+     */
+    private void scheduleFrameFade() {
+        isFrameFadeRuning = true;
+        isFrameFadeWaiting = false;
+        if (ViewCompat.isAttachedToWindow(this)) {
+            mScheduler.register(mFrameClient);
+        }
+    }
+
+    /**
+     * 停止帧回调直到下一次绘制，重新绘制说明已经布局并且出现在屏幕上
+     */
+    private void waitForDraw() {
+        isFrameFadeWaiting = true;
+        invalidate();
+    }
+
+    /**
+     * 每帧推进一次，根据流逝的时间一次显示多个字，不会比屏幕刷新更频繁地更新文字
+     */
+    private boolean doFrameFade(long frameTimeMillis) {
+        if (!ViewCompat.isLaidOut(this)) {
+            // 还没有布局，布局后第一次绘制时继续
+            waitForDraw();
+            return false;
+        }
+        if (!isRevealVisible()) {
+            // 不在屏幕上或者不可见，不再每帧检查，重新出现在屏幕上绘制时继续
+            if (mHiddenPolicy == HIDDEN_POLICY_FAST_FORWARD) {
+                fastForwardReveal();
+                return false;
+            }
+            if (!isRevealPaused) {
+                isRevealPaused = true;
+                mRevealProgress.pause(frameTimeMillis);
+            }
+            waitForDraw();
+            return false;
+        }
+        int oldIndex = mRevealProgress.getIndex();
+        if (isRevealPaused) {
+            isRevealPaused = false;
+            mRevealProgress.resume(frameTimeMillis);
+            if (mReturnPolicy == RETURN_POLICY_JUMP_TO_END) {
+                flushPendingText();
+                jumpRevealToEnd(frameTimeMillis);
+            } else if (mReturnPolicy == RETURN_POLICY_RESTART) {
+                mRevealProgress.restart(frameTimeMillis);
+            }
+        }
+        flushPendingText();
+        int index = mRevealProgress.advance(frameTimeMillis, mScheduler.getFrameBudget());
+        mScheduler.consumeFrameBudget(index - oldIndex);
+        if (isRecordingMetrics()) {
+            mMetrics.onFrame();
+            if (index > oldIndex) {
+                mMetrics.onUpdate(frameTimeMillis, mRevealProgress.getRevealTime(oldIndex), index - oldIndex);
+            }
+        }
+        applyRevealIndex(oldIndex, index);
+        if (isAlphaRevealing) {
+            // 淡入的进度每帧都在变化
+            mFrameTime = frameTimeMillis;
+            invalidate();
+        }
+        if (mRevealProgress.isFinished() && !isAlphaFading(frameTimeMillis)) {
+            if (isFadeStreaming) {
+                // 等待继续追加文字，不再占用帧回调
+                isFrameFadeRuning = false;
+                return false;
+            }
+            if (DEBUG) {
+                Log.i(TAG, "frame fade finish length:" + length);
+            }
+            isFrameFadeRuning = false;
+            isClipRevealing = false;
+            isAlphaRevealing = false;
+            if (isLongTextRevealing) {
+                // 显示完后交给TextView排版一次，保证getText()等行为正常
+                isLongTextRevealing = false;
+                setVisibleLength(length);
+            }
+            // 先移除帧回调：没有结束效果时会直接开始排队的文字，重新注册不能被这次的返回值移除
+            mScheduler.unregister(mFrameClient);
+            startAnim();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = isRecordingMetrics() ? System.nanoTime() : 0;
+        measureText(widthMeasureSpec, heightMeasureSpec);
+        if (start != 0) {
+            mMetrics.addLayoutTime(System.nanoTime() - start);
+        }
+    }
+
+    private void measureText(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mCachedText != null && measureCachedLayout(widthMeasureSpec, heightMeasureSpec)) {
+            return;
+        }
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        if (!isLongTextRevealing) {
+            return;
+        }
+        // 超长文字会占满可用宽度，高度随已显示的行数增长
+        int width = getMeasuredWidth();
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.AT_MOST) {
+            width = MeasureSpec.getSize(widthMeasureSpec);
+        }
+        int height = getMeasuredHeight();
+        if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY) {
+            int lineCount = Math.max(1, mLineBreaker.getLineCount());
+            int desired = getCompoundPaddingTop() + getCompoundPaddingBottom() + lineCount * getLineHeight();
+            height = resolveSize(desired, heightMeasureSpec);
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    /**
+     * 使用缓存的排版结果测量，不调用TextView的测量，测量时TextView不会自己排版
+     *
+     * @return false 无法使用缓存，需要TextView自己测量
+     */
+    private boolean measureCachedLayout(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int paddingH = getCompoundPaddingLeft() + getCompoundPaddingRight();
+        if (widthMode == MeasureSpec.UNSPECIFIED || widthSize <= paddingH) {
+            return false;
+        }
+        TextLayoutCache.Entry entry = obtainCachedLayout(widthSize - paddingH);
+        int width = widthSize;
+        if (widthMode == MeasureSpec.AT_MOST) {
+            width = Math.min(widthSize, Math.max(paddingH + entry.maxLineWidth, getSuggestedMinimumWidth()));
+            if (width != widthSize) {
+                // 按实际宽度再取一次，保证居中、靠右等对齐方式的位置正确
+                entry = obtainCachedLayout(Math.max(1, width - paddingH));
+            }
+        }
+        int desiredHeight = getCompoundPaddingTop() + getCompoundPaddingBottom() + entry.layout.getHeight();
+        int height = resolveSize(Math.max(desiredHeight, getSuggestedMinimumHeight()), heightMeasureSpec);
+        mCachedLayout = entry.layout;
+        setMeasuredDimension(width, height);
+        return true;
+    }
+
+    /**
+     * 只在{@link #canUseLayoutCache}为true，也就是API 16以上时调用
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private TextLayoutCache.Entry obtainCachedLayout(int width) {
+        int breakStrategy = 0;
+        int hyphenationFrequency = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            breakStrategy = getBreakStrategy();
+            hyphenationFrequency = getHyphenationFrequency();
+        }
+        return mLayoutCache.obtain(mCachedText, getPaint(), width, getCachedLayoutAlignment(),
+                getLineSpacingMultiplier(), getLineSpacingExtra(), getIncludeFontPadding(),
+                breakStrategy, hyphenationFrequency);
+    }
+
+    private Layout.Alignment getCachedLayoutAlignment() {
+        switch (getGravity() & Gravity.RELATIVE_HORIZONTAL_GRAVITY_MASK) {
+            case Gravity.CENTER_HORIZONTAL:
+                return Layout.Alignment.ALIGN_CENTER;
+            case Gravity.RIGHT:
+            case Gravity.END:
+                return Layout.Alignment.ALIGN_OPPOSITE;
+            default:
+                return Layout.Alignment.ALIGN_NORMAL;
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (isLongTextRevealing && w != oldw) {
+            mLineBreaker.reset(fadeChars, length, getAvailableTextWidth());
+            mLineBreaker.breakTo(mRevealProgress.getIndex());
+        }
+    }
+
+    /**
+     * 只对新显示出来的字分行，行数增加且高度是自适应时才重新测量
+     */
+    private void breakLongText(int index) {
+        int oldLineCount = mLineBreaker.getLineCount();
+        long start = isRecordingMetrics() ? System.nanoTime() : 0;
+        int lineCount = mLineBreaker.breakTo(index);
+        if (start != 0) {
+            mMetrics.addLayoutTime(System.nanoTime() - start);
+        }
+        ViewGroup.LayoutParams lp = getLayoutParams();
+        if (lineCount != oldLineCount && lp != null && lp.height == ViewGroup.LayoutParams.WRAP_CONTENT) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    private float getAvailableTextWidth() {
+        return getWidth() - getCompoundPaddingLeft() - getCompoundPaddingRight();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (isFrameFadeWaiting) {
+            isFrameFadeWaiting = false;
+            if (isFrameFadeRuning) {
+                scheduleFrameFade();
+            }
+        }
+        if (isLongTextRevealing) {
+            drawLongText(canvas, mRevealProgress.getIndex());
+            return;
+        }
+        Layout layout = mCachedLayout != null ? mCachedLayout : getLayout();
+        if (!isClipRevealing || layout == null) {
+            drawTextLayout(canvas, layout);
+            return;
+        }
+        int index = mRevealProgress.getIndex();
+        if (isAlphaRevealing) {
+            int opaqueIndex = mRevealProgress.getIndexAt(mFrameTime - mFadeDuration);
+            drawClipped(canvas, layout, opaqueIndex);
+            drawFadingChars(canvas, layout, opaqueIndex, index);
+        } else {
+            drawClipped(canvas, layout, index);
+        }
+    }
+
+    /**
+     * 是否还有字没有完全淡入
+     */
+    private boolean isAlphaFading(long frameTimeMillis) {
+        return isAlphaRevealing && length > 0
+                && frameTimeMillis < mRevealProgress.getRevealTime(length - 1) + mFadeDuration;
+    }
+
+    /**
+     * 逐个绘制正在淡入的字，每个字只绘制裁剪到自己范围内的那一行，
+     * 每帧的工作量只与正在淡入的字数有关，不创建任何对象
+     */
+    private void drawFadingChars(Canvas canvas, Layout layout, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        TextPaint paint = layout.getPaint();
+        if (paint != getPaint()) {
+            paint.set(getPaint());
+        }
+        int color = getCurrentTextColor();
+        int baseAlpha = Color.alpha(color);
+        paint.setColor(color);
+        // 样式中的颜色会覆盖画笔的透明度，带样式的文字改为整体叠加透明度
+        boolean layerAlpha = mFadeSpannable != null;
+        int offsetX = getCompoundPaddingLeft();
+        int offsetY = getExtendedPaddingTop() + getTextVerticalOffset(layout);
+        for (int i = start; i < end; i++) {
+            int next = i + 1;
+            if (Character.isHighSurrogate(fadeChars[i]) && next < end) {
+                next++;
+            }
+            float fraction = (mFrameTime - mRevealProgress.getRevealTime(next - 1)) / (float) mFadeDuration;
+            int line = layout.getLineForOffset(i);
+            float x = layout.getPrimaryHorizontal(i);
+            float nextX;
+            if (next < layout.getLineEnd(line)) {
+                nextX = layout.getPrimaryHorizontal(next);
+            } else if (layout.getParagraphDirection(line) == Layout.DIR_RIGHT_TO_LEFT) {
+                nextX = layout.getLineLeft(line);
+            } else {
+                nextX = layout.getLineRight(line);
+            }
+            float left = Math.min(x, nextX);
+            float right = Math.max(x, nextX);
+            if (right > left && fraction > 0) {
+                int save = canvas.save();
+                canvas.clipRect(offsetX + left, offsetY + layout.getLineTop(line),
+                        offsetX + right, offsetY + layout.getLineBottom(line));
+                if (layerAlpha) {
+                    canvas.saveLayerAlpha(offsetX + left, offsetY + layout.getLineTop(line),
+                            offsetX + right, offsetY + layout.getLineBottom(line),
+                            (int) (255 * Math.min(1f, fraction)), Canvas.ALL_SAVE_FLAG);
+                } else {
+                    paint.setAlpha((int) (baseAlpha * Math.min(1f, fraction)));
                 }
+                canvas.translate(offsetX, offsetY);
+                layout.draw(canvas);
+                canvas.restoreToCount(save);
+            }
+            i = next - 1;
+        }
+        paint.setColor(color);
+    }
+
+    /**
+     * 设置{@link #REVEAL_MODE_ALPHA}模式下每个字从透明到不透明的时间
+     */
+    public void setFadeDuration(long fadeDuration) {
+        this.mFadeDuration = Math.max(1, fadeDuration);
+    }
+
+    /**
+     * 只绘制排版结果中的前index个字：已经显示完的行整行绘制，正在显示的行只绘制到index的位置
+     * <p>
+     * Layout只会绘制与裁剪区域相交的行，所以每帧的绘制量与文字总长度无关
+     */
+    private void drawClipped(Canvas canvas, Layout layout, int index) {
+        if (index <= 0) {
+            return;
+        }
+        int offsetX = getCompoundPaddingLeft();
+        int offsetY = getExtendedPaddingTop() + getTextVerticalOffset(layout);
+        int scrollX = getScrollX();
+        int scrollY = getScrollY();
 
+        int line = layout.getLineForOffset(index);
+        int lineTop = offsetY + layout.getLineTop(line);
+        // 已经显示完的行
+        if (line > 0) {
+            int save = canvas.save();
+            canvas.clipRect(scrollX, scrollY, scrollX + getWidth(), lineTop);
+            drawTextLayout(canvas, layout);
+            canvas.restoreToCount(save);
+        }
+        // 正在显示的行
+        float x = layout.getPrimaryHorizontal(index);
+        float left;
+        float right;
+        if (layout.getParagraphDirection(line) == Layout.DIR_RIGHT_TO_LEFT) {
+            left = x;
+            right = layout.getLineRight(line);
+        } else {
+            left = layout.getLineLeft(line);
+            right = x;
+        }
+        if (right > left) {
+            int save = canvas.save();
+            canvas.clipRect(offsetX + left, lineTop, offsetX + right, offsetY + layout.getLineBottom(line));
+            drawTextLayout(canvas, layout);
+            canvas.restoreToCount(save);
+        }
+    }
+
+    /**
+     * 绘制全部文字：缓存的排版结果由自己绘制，否则交给TextView
+     */
+    private void drawTextLayout(Canvas canvas, Layout layout) {
+        if (layout == null || layout != mCachedLayout) {
+            super.onDraw(canvas);
+            return;
+        }
+        if (isBoundaryPending) {
+            // 还没有开始显示
+            return;
+        }
+        // 缓存的排版结果可能由其它View创建，绘制前同步当前View的画笔
+        TextPaint paint = layout.getPaint();
+        paint.set(getPaint());
+        paint.setColor(getCurrentTextColor());
+        paint.drawableState = getDrawableState();
+        int save = canvas.save();
+        canvas.translate(getCompoundPaddingLeft(), getExtendedPaddingTop() + getTextVerticalOffset(layout));
+        layout.draw(canvas);
+        canvas.restoreToCount(save);
+    }
+
+    /**
+     * 绘制超长文字中已显示的部分，只绘制与裁剪区域相交的行
+     */
+    private void drawLongText(Canvas canvas, int index) {
+        int lineCount = mLineBreaker.getLineCount();
+        if (index <= 0 || lineCount == 0) {
+            return;
+        }
+        TextPaint paint = getPaint();
+        paint.setColor(getCurrentTextColor());
+        paint.getFontMetricsInt(mFontMetrics);
+        int lineHeight = getLineHeight();
+        int left = getCompoundPaddingLeft();
+        int top = getExtendedPaddingTop();
+
+        int firstLine = 0;
+        int lastLine = lineCount - 1;
+        if (canvas.getClipBounds(mClipBounds)) {
+            firstLine = Math.max(0, (mClipBounds.top - top) / lineHeight);
+            lastLine = Math.min(lastLine, (mClipBounds.bottom - top) / lineHeight);
+        }
+        for (int line = firstLine; line <= lastLine; line++) {
+            int start = mLineBreaker.getLineStart(line);
+            if (start >= index) {
+                break;
+            }
+            int end = Math.min(mLineBreaker.getLineEnd(line), index);
+            if (end > start && fadeChars[end - 1] == '\n') {
+                end--;
             }
-        });
+            if (end > start) {
+                int baseline = top + line * lineHeight - mFontMetrics.ascent;
+                canvas.drawText(fadeChars, start, end - start, left, baseline, paint);
+            }
+        }
     }
 
-    private static class FadeHandler extends Handler {
+    /**
+     * 与TextView绘制文字时使用的垂直偏移一致
+     */
+    private int getTextVerticalOffset(Layout layout) {
+        int gravity = getGravity() & Gravity.VERTICAL_GRAVITY_MASK;
+        if (gravity == Gravity.TOP) {
+            return 0;
+        }
+        int boxHeight = getMeasuredHeight() - getExtendedPaddingTop() - getExtendedPaddingBottom();
+        int textHeight = layout.getHeight();
+        if (textHeight >= boxHeight) {
+            return 0;
+        }
+        if (gravity == Gravity.BOTTOM) {
+            return boxHeight - textHeight;
+        }
+        return (boxHeight - textHeight) >> 1;
+    }
+
+    /**
+     * 使用TextView的画笔测量文字宽度
+     */
+    private static class PaintMeasurer implements IncrementalLineBreaker.Measurer {
 
-        WeakReference<FadeTextView> weakReference = null;
+        private final TextPaint mPaint;
 
-        public FadeHandler(FadeTextView fadeTextView) {
-            this.weakReference = new WeakReference<FadeTextView>(fadeTextView);
+        PaintMeasurer(TextPaint paint) {
+            this.mPaint = paint;
         }
 
         @Override
-        public void handleMessage(Message msg) {
-            super.handleMessage(msg);
-            FadeTextView fadeTextView = weakReference.get();
-            switch (msg.what) {
-                case MSG_HANDLER_FADE:
-                    int nIndex = msg.arg1;
-                    if (fadeTextView != null) {
-                        fadeTextView.startFade(nIndex);
-                    }
-                    break;
-                case MSG_HANDLER_ANIM:
-                    if (fadeTextView != null) {
-                        fadeTextView.startAnim();
-                    }
-                    break;
-                default:
-                    break;
+        public int breakText(char[] text, int start, int end, float maxWidth) {
+            return mPaint.breakText(text, start, end - start, maxWidth, null);
+        }
+    }
+
+    /**
+     * 屏幕旋转等重建时保存的显示进度
+     */
+    static class SavedState extends BaseSavedState {
+
+        FadeRevealState revealState;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel source) {
+            super(source);
+            revealState = FadeRevealState.CREATOR.createFromParcel(source);
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            revealState.writeToParcel(out, flags);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source) {
+                return new SavedState(source);
             }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    /**
+     * 排队等待显示的文字
+     */
+    private static class PendingFade {
+
+        final CharSequence text;
+        final FadeTextViewAnimListener listener;
+
+        PendingFade(CharSequence text, FadeTextViewAnimListener listener) {
+            this.text = text;
+            this.listener = listener;
         }
     }
 
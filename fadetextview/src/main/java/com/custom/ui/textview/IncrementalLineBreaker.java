@@ -0,0 +1,166 @@
+package com.custom.ui.textview;
+
+/**
+ * 按需分行：只在需要显示到某个位置时才计算到该位置为止的行，已经分好的行不会重新计算
+ * <p>
+ * 每个字只会被测量常数次，总的分行耗时与文字长度成线性关系，适合超长文字逐个显示
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+final class IncrementalLineBreaker {
+
+    /**
+     * 文字宽度测量
+     */
+    interface Measurer {
+        /**
+         * 从start开始，在maxWidth宽度内最多能放下多少个字
+         *
+         * @param text     文字
+         * @param start    开始位置
+         * @param end      结束位置(不包含)
+         * @param maxWidth 最大宽度
+         * @return 能放下的字数
+         */
+        int breakText(char[] text, int start, int end, float maxWidth);
+    }
+
+    private final Measurer mMeasurer;
+
+    private char[] mText;
+    private int mLength;
+    private float mWidth;
+
+    /**
+     * 每一行的结束位置(不包含)
+     */
+    private int[] mLineEnds = new int[16];
+    private int mLineCount;
+
+    /**
+     * 当前段落的结束位置，也就是下一个换行符的位置，每个段落只查找一次
+     */
+    private int mParagraphEnd = -1;
+
+    /**
+     * 最后一行是否因为文字结束而结束，文字变长后这一行需要重新分行
+     */
+    private boolean mLastLineOpen;
+
+    IncrementalLineBreaker(Measurer measurer) {
+        this.mMeasurer = measurer;
+    }
+
+    /**
+     * 重新设置文字和宽度，之前的分行结果全部丢弃
+     */
+    void reset(char[] text, int length, float width) {
+        mText = text;
+        mLength = length;
+        mWidth = width;
+        mLineCount = 0;
+        mParagraphEnd = -1;
+        mLastLineOpen = false;
+    }
+
+    /**
+     * 文字变长，已经分好的行保持不变，只有因文字结束而结束的最后一行会被重新分行
+     *
+     * @param text   新的文字，可以是扩容后的新数组
+     * @param length 新的文字长度
+     */
+    void append(char[] text, int length) {
+        mText = text;
+        if (mLastLineOpen) {
+            mLineCount--;
+            mLastLineOpen = false;
+        }
+        if (mParagraphEnd >= mLength) {
+            // 之前的段落结束位置是文字结束而不是换行符
+            mParagraphEnd = -1;
+        }
+        mLength = length;
+    }
+
+    int getLineCount() {
+        return mLineCount;
+    }
+
+    int getLineStart(int line) {
+        return line == 0 ? 0 : mLineEnds[line - 1];
+    }
+
+    int getLineEnd(int line) {
+        return mLineEnds[line];
+    }
+
+    /**
+     * 已经分好行的文字的结束位置
+     */
+    int getBrokenEnd() {
+        return mLineCount == 0 ? 0 : mLineEnds[mLineCount - 1];
+    }
+
+    /**
+     * 保证offset之前的文字都已经分好行
+     *
+     * @param offset 需要显示到的位置
+     * @return 分好行的行数
+     */
+    int breakTo(int offset) {
+        if (mText == null || mWidth <= 0) {
+            return mLineCount;
+        }
+        int target = Math.min(offset, mLength);
+        while (getBrokenEnd() < target) {
+            breakNextLine();
+        }
+        return mLineCount;
+    }
+
+    private void breakNextLine() {
+        int start = getBrokenEnd();
+        if (mParagraphEnd < start) {
+            int i = start;
+            while (i < mLength && mText[i] != '\n') {
+                i++;
+            }
+            mParagraphEnd = i;
+        }
+        int paragraphEnd = mParagraphEnd;
+        int end;
+        mLastLineOpen = false;
+        if (start == paragraphEnd) {
+            // 空行
+            end = Math.min(paragraphEnd + 1, mLength);
+        } else {
+            int count = mMeasurer.breakText(mText, start, paragraphEnd, mWidth);
+            end = start + Math.max(1, count);
+            if (end < paragraphEnd) {
+                // 尽量在空格后换行，避免把单词截断
+                int wordEnd = end;
+                while (wordEnd > start && mText[wordEnd - 1] != ' ') {
+                    wordEnd--;
+                }
+                if (wordEnd > start) {
+                    end = wordEnd;
+                } else if (end - start > 1 && Character.isHighSurrogate(mText[end - 1])) {
+                    // 不拆开代理对
+                    end--;
+                }
+            } else {
+                // 段落的最后一行，换行符算在这一行
+                end = Math.min(paragraphEnd + 1, mLength);
+                mLastLineOpen = paragraphEnd == mLength;
+            }
+        }
+        if (mLineCount == mLineEnds.length) {
+            int[] lineEnds = new int[mLineCount * 2];
+            System.arraycopy(mLineEnds, 0, lineEnds, 0, mLineCount);
+            mLineEnds = lineEnds;
+        }
+        mLineEnds[mLineCount++] = end;
+    }
+}
@@ -0,0 +1,75 @@
+package com.custom.ui.textview;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+
+/**
+ * 逐个显示的单位划分，每段文字只分析一次，结果是每个单位的结束位置(不包含)，最后一个等于文字长度
+ * <p>
+ * 不依赖任何Android类，可以在后台线程执行
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+final class RevealBoundaries {
+
+    private RevealBoundaries() {
+    }
+
+    /**
+     * 按用户可见的字划分，代理对、组合字符不会被拆开显示
+     */
+    static int[] forGraphemes(String text) {
+        return collect(text, BreakIterator.getCharacterInstance(), false);
+    }
+
+    /**
+     * 按单词划分，单词后面的空白跟单词一起显示
+     */
+    static int[] forWords(String text) {
+        return collect(text, BreakIterator.getWordInstance(), true);
+    }
+
+    /**
+     * 按换行符划分，换行符跟前面的一行一起显示
+     */
+    static int[] forLines(String text) {
+        int length = text.length();
+        int[] boundaries = new int[16];
+        int count = 0;
+        int index = text.indexOf('\n');
+        while (index >= 0 && index + 1 < length) {
+            if (count == boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, count * 2);
+            }
+            boundaries[count++] = index + 1;
+            index = text.indexOf('\n', index + 1);
+        }
+        return finish(boundaries, count, length);
+    }
+
+    private static int[] collect(String text, BreakIterator iterator, boolean mergeWhitespace) {
+        int length = text.length();
+        iterator.setText(text);
+        int[] boundaries = new int[Math.max(1, Math.min(length, 64))];
+        int count = 0;
+        for (int end = iterator.next(); end != BreakIterator.DONE && end < length; end = iterator.next()) {
+            if (mergeWhitespace && Character.isWhitespace(text.charAt(end))) {
+                // 空白的开始不作为边界，空白并入前一个单词
+                continue;
+            }
+            if (count == boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, count * 2);
+            }
+            boundaries[count++] = end;
+        }
+        return finish(boundaries, count, length);
+    }
+
+    private static int[] finish(int[] boundaries, int count, int length) {
+        int[] result = Arrays.copyOf(boundaries, count + 1);
+        result[count] = length;
+        return result;
+    }
+}
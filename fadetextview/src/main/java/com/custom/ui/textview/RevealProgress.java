@@ -0,0 +1,247 @@
+package com.custom.ui.textview;
+
+import java.util.Arrays;
+
+/**
+ * 逐字显示的进度计算，根据流逝的时间计算当前应显示到第几个字
+ * <p>
+ * 不依赖任何Android类，只在UI线程使用
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+final class RevealProgress {
+
+    /**
+     * 文字总长度
+     */
+    private int mLength;
+
+    /**
+     * 每个字的显示间隔
+     */
+    private long mCharDuration;
+
+    /**
+     * 开始显示的时间
+     */
+    private long mStartTime;
+
+    /**
+     * 当前已显示的字数
+     */
+    private int mIndex;
+
+    /**
+     * 每帧最多显示的字数，小于等于0时不限制
+     */
+    private int mMaxStep;
+
+    /**
+     * 暂停的时间，小于0表示没有暂停
+     */
+    private long mPauseTime = -1;
+
+    /**
+     * 显示单位的结束位置，为null时逐字显示。只覆盖开始时的文字，之后追加的部分逐字显示
+     */
+    private int[] mBoundaries;
+
+    /**
+     * 开始一次新的显示
+     *
+     * @param length       文字总长度
+     * @param charDuration 每个字的显示间隔，小于等于0时一次全部显示
+     * @param startTime    开始时间
+     */
+    void start(int length, long charDuration, long startTime) {
+        mLength = length;
+        mCharDuration = charDuration;
+        mStartTime = startTime;
+        mIndex = 0;
+        mMaxStep = 0;
+        mPauseTime = -1;
+        mBoundaries = null;
+    }
+
+    /**
+     * 按整个单位显示，时间仍然按字计算，一个单位在它最后一个字的时间到达时整体出现
+     *
+     * @param boundaries 每个单位的结束位置，见{@link RevealBoundaries}
+     */
+    void setBoundaries(int[] boundaries) {
+        mBoundaries = boundaries;
+    }
+
+    /**
+     * 暂停显示，恢复后从暂停时的位置继续
+     */
+    void pause(long now) {
+        if (mPauseTime < 0) {
+            mPauseTime = now;
+        }
+    }
+
+    /**
+     * 从暂停的位置继续，暂停期间流逝的时间不计入显示进度
+     */
+    void resume(long now) {
+        if (mPauseTime >= 0) {
+            mStartTime += now - mPauseTime;
+            mPauseTime = -1;
+        }
+    }
+
+    /**
+     * 从头重新开始显示
+     */
+    void restart(long now) {
+        mStartTime = now;
+        mIndex = 0;
+        mPauseTime = -1;
+    }
+
+    /**
+     * 从index继续显示，之前的字视为已经按原来的速度显示完，之后的字从now开始按原来的速度显示
+     */
+    void resumeAt(int index, long now) {
+        mIndex = Math.max(0, Math.min(index, mLength));
+        mStartTime = now - mIndex * Math.max(0, mCharDuration);
+        mPauseTime = -1;
+    }
+
+    /**
+     * 立即显示全部文字，所有字都视为在now之前已经显示
+     */
+    void jumpToEnd(long now) {
+        mIndex = mLength;
+        mStartTime = Math.min(mStartTime, now - mLength * Math.max(0, mCharDuration));
+    }
+
+    /**
+     * 限制每帧最多显示的字数，超出的部分顺延到之后的帧，避免超长文字在一帧内做太多工作
+     *
+     * @param maxStep 每帧最多显示的字数，小于等于0时不限制
+     */
+    void setMaxStep(int maxStep) {
+        mMaxStep = maxStep;
+    }
+
+    /**
+     * 文字变长时继续显示，已显示的部分不受影响
+     * <p>
+     * 如果之前的文字已经全部显示完，从now开始按原来的速度继续，而不是一次显示出等待期间积累的字
+     *
+     * @param length 新的文字总长度
+     * @param now    当前时间
+     */
+    void append(int length, long now) {
+        if (mIndex >= mLength) {
+            mStartTime = now - mIndex * mCharDuration;
+        }
+        mLength = length;
+    }
+
+    /**
+     * 根据当前帧的时间推进显示进度，一帧内可能显示多个字
+     *
+     * @param frameTime 当前帧的时间
+     * @return 推进后已显示的字数
+     */
+    int advance(long frameTime) {
+        return advance(frameTime, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 根据当前帧的时间推进显示进度，并且这一帧最多显示budget个字
+     *
+     * @param frameTime 当前帧的时间
+     * @param budget    这一帧最多显示的字数
+     * @return 推进后已显示的字数
+     */
+    int advance(long frameTime, int budget) {
+        long elapsed = frameTime - mStartTime;
+        if (elapsed < 0) {
+            return mIndex;
+        }
+        long target = mCharDuration <= 0 ? mLength : elapsed / mCharDuration;
+        int due = (int) Math.min(mLength, target);
+        if (mMaxStep > 0 && target > mIndex + mMaxStep) {
+            target = mIndex + mMaxStep;
+        }
+        if (target > mIndex + (long) budget) {
+            target = mIndex + (long) budget;
+        }
+        if (target > mIndex) {
+            int index = floorBoundary((int) Math.min(mLength, target));
+            if (index <= mIndex && ceilBoundary(mIndex + 1) <= due) {
+                // 单位比每帧的上限还长时，超出上限也要显示完整的一个单位，不会一直卡住
+                index = ceilBoundary(mIndex + 1);
+            }
+            if (index > mIndex) {
+                mIndex = index;
+            }
+        }
+        return mIndex;
+    }
+
+    /**
+     * 第index个字按时间应该开始显示的时间，用于计算淡入的进度
+     */
+    long getRevealTime(int index) {
+        return mStartTime + ceilBoundary(index + 1) * Math.max(0, mCharDuration);
+    }
+
+    /**
+     * 到time时已经显示的字数，不超过当前已显示的字数
+     */
+    int getIndexAt(long time) {
+        long elapsed = time - mStartTime;
+        if (elapsed < 0) {
+            return 0;
+        }
+        long index = mCharDuration <= 0 ? mLength : elapsed / mCharDuration;
+        return floorBoundary((int) Math.min(mIndex, index));
+    }
+
+    /**
+     * 不超过offset的最后一个单位边界
+     */
+    private int floorBoundary(int offset) {
+        int[] boundaries = mBoundaries;
+        if (boundaries == null || offset >= boundaries[boundaries.length - 1]) {
+            return offset;
+        }
+        int i = Arrays.binarySearch(boundaries, offset);
+        if (i >= 0) {
+            return offset;
+        }
+        int insert = -i - 1;
+        return insert == 0 ? 0 : boundaries[insert - 1];
+    }
+
+    /**
+     * 不小于offset的第一个单位边界
+     */
+    private int ceilBoundary(int offset) {
+        int[] boundaries = mBoundaries;
+        if (boundaries == null || offset >= boundaries[boundaries.length - 1]) {
+            return offset;
+        }
+        int i = Arrays.binarySearch(boundaries, offset);
+        return i >= 0 ? offset : boundaries[-i - 1];
+    }
+
+    int getIndex() {
+        return mIndex;
+    }
+
+    int getLength() {
+        return mLength;
+    }
+
+    boolean isFinished() {
+        return mIndex >= mLength;
+    }
+}
@@ -0,0 +1,124 @@
+package com.custom.ui.textview;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ObjectAnimator;
+import android.animation.PropertyValuesHolder;
+import android.animation.TimeInterpolator;
+import android.support.annotation.VisibleForTesting;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+/**
+ * 默认的结束效果：放大再恢复
+ * <p>
+ * 动画只在第一次执行时创建，之后每次显示都复用同一个动画和监听；
+ * 通过{@link View#SCALE_X}、{@link View#SCALE_Y}直接设置属性，不需要反射查找属性方法
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+public class ScaleEndEffect implements FadeEndEffect {
+
+    public static final float DEFAULT_SCALE = 1.25f;
+
+    public static final long DEFAULT_DURATION = 200;
+
+    private float mScale = DEFAULT_SCALE;
+    private long mDuration = DEFAULT_DURATION;
+    private TimeInterpolator mInterpolator;
+
+    private ObjectAnimator mAnimator;
+    private PropertyValuesHolder mScaleX;
+    private PropertyValuesHolder mScaleY;
+
+    private View mTarget;
+    private Listener mListener;
+    private boolean isCanceled = false;
+
+    private final AnimatorListenerAdapter mAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationCancel(Animator animation) {
+            isCanceled = true;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            Listener listener = mListener;
+            mListener = null;
+            if (!isCanceled && listener != null) {
+                listener.onEffectEnd();
+            }
+        }
+    };
+
+    /**
+     * 设置放大的最大倍数
+     */
+    public ScaleEndEffect setScale(float scale) {
+        this.mScale = scale;
+        if (mAnimator != null) {
+            mScaleX.setFloatValues(1, scale, 1);
+            mScaleY.setFloatValues(1, scale, 1);
+        }
+        return this;
+    }
+
+    public ScaleEndEffect setDuration(long duration) {
+        this.mDuration = duration;
+        if (mAnimator != null) {
+            mAnimator.setDuration(duration);
+        }
+        return this;
+    }
+
+    public ScaleEndEffect setInterpolator(TimeInterpolator interpolator) {
+        this.mInterpolator = interpolator;
+        if (mAnimator != null) {
+            mAnimator.setInterpolator(interpolator);
+        }
+        return this;
+    }
+
+    @Override
+    public void start(View view, Listener listener) {
+        if (mAnimator == null) {
+            mScaleX = PropertyValuesHolder.ofFloat(View.SCALE_X, 1, mScale, 1);
+            mScaleY = PropertyValuesHolder.ofFloat(View.SCALE_Y, 1, mScale, 1);
+            mAnimator = ObjectAnimator.ofPropertyValuesHolder(view, mScaleX, mScaleY);
+            mAnimator.setDuration(mDuration);
+            mAnimator.setInterpolator(mInterpolator != null ? mInterpolator : new DecelerateInterpolator());
+            mAnimator.addListener(mAnimatorListener);
+        } else if (mTarget != view) {
+            mAnimator.setTarget(view);
+        }
+        mTarget = view;
+        mListener = listener;
+        isCanceled = false;
+        mAnimator.start();
+    }
+
+    @VisibleForTesting
+    ObjectAnimator getAnimator() {
+        return mAnimator;
+    }
+
+    @Override
+    public void cancel() {
+        if (mAnimator == null || !mAnimator.isStarted()) {
+            return;
+        }
+        mListener = null;
+        mAnimator.cancel();
+        mTarget.setScaleX(1);
+        mTarget.setScaleY(1);
+    }
+
+    @Override
+    public void end() {
+        if (mAnimator != null && mAnimator.isStarted()) {
+            mAnimator.end();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.custom.ui.textview;
+
+import android.annotation.TargetApi;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.util.Locale;
+
+/**
+ * 多个FadeTextView共用的排版结果缓存，按文字、影响排版的画笔属性和可用宽度查找
+ * <p>
+ * 列表中滑回已经显示过的行时直接使用之前的排版结果，不再测量和分行。
+ * 按估算的内存大小淘汰最久没有使用的结果，只在UI线程使用
+ *
+ * @author lijia
+ * @date 18-3-26
+ */
+
+public final class TextLayoutCache {
+
+    /**
+     * 默认缓存的内存上限
+     */
+    private static final int DEFAULT_MAX_BYTES = 512 * 1024;
+
+    private final LruCache<Key, Entry> mCache;
+
+    /**
+     * 查找时复用的key，命中时不创建任何对象
+     */
+    private final Key mProbe = new Key();
+
+    /**
+     * @param maxBytes 缓存的内存上限，按文字长度和行数估算
+     */
+    public TextLayoutCache(int maxBytes) {
+        mCache = new LruCache<Key, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Entry value) {
+                return estimateBytes(key.text, value.layout);
+            }
+        };
+    }
+
+    /**
+     * 所有FadeTextView默认共用的缓存，可以在任意线程调用，FadeTextView可能在后台线程创建
+     */
+    public static TextLayoutCache getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * 取得文字的排版结果，没有缓存时排版一次并放入缓存
+     * <p>
+     * 结果中的Layout持有自己的画笔，绘制前需要把颜色等只影响绘制的属性同步到{@link Layout#getPaint()}
+     *
+     * @param breakStrategy        分行策略，API 23以下传0
+     * @param hyphenationFrequency 断字频率，API 23以下传0
+     */
+    Entry obtain(String text, TextPaint paint, int width, Layout.Alignment alignment,
+                 float spacingMult, float spacingAdd, boolean includePad,
+                 int breakStrategy, int hyphenationFrequency) {
+        mProbe.set(text, paint, width, alignment, spacingMult, spacingAdd, includePad, breakStrategy, hyphenationFrequency);
+        Entry entry = mCache.get(mProbe);
+        if (entry == null) {
+            Layout layout;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                layout = buildLayout(text, new TextPaint(paint), width, alignment, spacingMult, spacingAdd, includePad,
+                        breakStrategy, hyphenationFrequency);
+            } else {
+                layout = new StaticLayout(text, new TextPaint(paint), width, alignment,
+                        spacingMult, spacingAdd, includePad);
+            }
+            entry = new Entry(layout);
+            Key key = new Key();
+            key.set(text, paint, width, alignment, spacingMult, spacingAdd, includePad, breakStrategy, hyphenationFrequency);
+            mCache.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * API 23以上按TextView的分行策略和断字频率排版，与TextView自己排版的结果一致
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private static Layout buildLayout(String text, TextPaint paint, int width, Layout.Alignment alignment,
+                                      float spacingMult, float spacingAdd, boolean includePad,
+                                      int breakStrategy, int hyphenationFrequency) {
+        return StaticLayout.Builder.obtain(text, 0, text.length(), paint, width)
+                .setAlignment(alignment)
+                .setLineSpacing(spacingAdd, spacingMult)
+                .setIncludePad(includePad)
+                .setBreakStrategy(breakStrategy)
+                .setHyphenationFrequency(hyphenationFrequency)
+                .build();
+    }
+
+    /**
+     * 修改内存上限，超出的部分立即淘汰
+     */
+    public void resize(int maxBytes) {
+        mCache.resize(maxBytes);
+    }
+
+    /**
+     * 清空缓存，统计数据保留
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * 当前缓存占用的估算内存
+     */
+    public int getSizeBytes() {
+        return mCache.size();
+    }
+
+    public int getMaxSizeBytes() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * 估算一个排版结果占用的内存：文字本身，加上每行记录的位置、方向等信息
+     */
+    private static int estimateBytes(String text, Layout layout) {
+        return 2 * text.length() + 40 * layout.getLineCount() + 200;
+    }
+
+    /**
+     * 第一次调用{@link #getDefault}时由类加载保证只创建一次
+     */
+    private static final class DefaultHolder {
+        static final TextLayoutCache INSTANCE = new TextLayoutCache(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * 一次排版的结果
+     */
+    static final class Entry {
+
+        final Layout layout;
+
+        /**
+         * 最宽一行的宽度，自适应宽度时使用，只在排版时计算一次
+         */
+        final int maxLineWidth;
+
+        Entry(Layout layout) {
+            this.layout = layout;
+            float max = 0;
+            for (int i = 0; i < layout.getLineCount(); i++) {
+                max = Math.max(max, layout.getLineWidth(i));
+            }
+            this.maxLineWidth = (int) Math.ceil(max);
+        }
+    }
+
+    /**
+     * 缓存的key，包含所有会影响排版结果的属性，颜色等只影响绘制的属性不在其中
+     */
+    private static final class Key {
+
+        String text;
+        float textSize;
+        Typeface typeface;
+        float textScaleX;
+        float textSkewX;
+        float letterSpacing;
+        Locale textLocale;
+        int flags;
+        int width;
+        Layout.Alignment alignment;
+        float spacingMult;
+        float spacingAdd;
+        boolean includePad;
+        int breakStrategy;
+        int hyphenationFrequency;
+        int hash;
+
+        void set(String text, TextPaint paint, int width, Layout.Alignment alignment,
+                 float spacingMult, float spacingAdd, boolean includePad,
+                 int breakStrategy, int hyphenationFrequency) {
+            this.text = text;
+            this.textSize = paint.getTextSize();
+            this.typeface = paint.getTypeface();
+            this.textScaleX = paint.getTextScaleX();
+            this.textSkewX = paint.getTextSkewX();
+            this.letterSpacing = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0;
+            // 分行使用的断行规则和断字都与语言有关
+            this.textLocale = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ? paint.getTextLocale() : null;
+            this.flags = paint.getFlags();
+            this.width = width;
+            this.alignment = alignment;
+            this.spacingMult = spacingMult;
+            this.spacingAdd = spacingAdd;
+            this.includePad = includePad;
+            this.breakStrategy = breakStrategy;
+            this.hyphenationFrequency = hyphenationFrequency;
+
+            int h = text.hashCode();
+            h = 31 * h + Float.floatToIntBits(textSize);
+            h = 31 * h + (typeface != null ? typeface.hashCode() : 0);
+            h = 31 * h + Float.floatToIntBits(textScaleX);
+            h = 31 * h + Float.floatToIntBits(textSkewX);
+            h = 31 * h + Float.floatToIntBits(letterSpacing);
+            h = 31 * h + (textLocale != null ? textLocale.hashCode() : 0);
+            h = 31 * h + flags;
+            h = 31 * h + width;
+            h = 31 * h + alignment.hashCode();
+            h = 31 * h + Float.floatToIntBits(spacingMult);
+            h = 31 * h + Float.floatToIntBits(spacingAdd);
+            h = 31 * h + (includePad ? 1 : 0);
+            h = 31 * h + breakStrategy;
+            h = 31 * h + hyphenationFrequency;
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                    && width == key.width
+                    && flags == key.flags
+                    && includePad == key.includePad
+                    && breakStrategy == key.breakStrategy
+                    && hyphenationFrequency == key.hyphenationFrequency
+                    && Float.compare(textSize, key.textSize) == 0
+                    && Float.compare(textScaleX, key.textScaleX) == 0
+                    && Float.compare(textSkewX, key.textSkewX) == 0
+                    && Float.compare(letterSpacing, key.letterSpacing) == 0
+                    && Float.compare(spacingMult, key.spacingMult) == 0
+                    && Float.compare(spacingAdd, key.spacingAdd) == 0
+                    && typeface == key.typeface
+                    && alignment == key.alignment
+                    && (textLocale != null ? textLocale.equals(key.textLocale) : key.textLocale == null)
+                    && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.custom.ui.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DurationHistogramTest {
+
+    @Test
+    public void bucketsArePowersOfTwoMicros() throws Exception {
+        assertEquals(0, DurationHistogram.getBucketIndex(999));
+        assertEquals(1, DurationHistogram.getBucketIndex(1000));
+        assertEquals(2, DurationHistogram.getBucketIndex(2000));
+        assertEquals(2, DurationHistogram.getBucketIndex(3999));
+        assertEquals(3, DurationHistogram.getBucketIndex(4000));
+        // 16ms
+        assertEquals(14, DurationHistogram.getBucketIndex(16000000));
+        assertEquals(DurationHistogram.BUCKET_COUNT - 1, DurationHistogram.getBucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesUseBucketUpperBound() throws Exception {
+        DurationHistogram histogram = new DurationHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1500);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(20000000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(90, histogram.getBucketCount(1));
+        assertEquals(10, histogram.getBucketCount(15));
+        assertEquals(2000, histogram.getPercentileNanos(50));
+        assertEquals(2000, histogram.getPercentileNanos(90));
+        // 不超过记录到的最大值
+        assertEquals(20000000, histogram.getPercentileNanos(99));
+        assertEquals(20000000, histogram.getMaxNanos());
+        assertEquals((90 * 1500L + 10 * 20000000L) / 100, histogram.getAverageNanos());
+    }
+
+    @Test
+    public void copyAndReset() throws Exception {
+        DurationHistogram histogram = new DurationHistogram();
+        histogram.record(5000);
+        DurationHistogram copy = new DurationHistogram();
+        copy.copyFrom(histogram);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(1, copy.getCount());
+        assertEquals(1, copy.getBucketCount(3));
+        assertEquals(5000, copy.getTotalNanos());
+    }
+}
@@ -0,0 +1,220 @@
+package com.custom.ui.common;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 后台和UI线程都换成手动执行的队列，检查分页加载、预加载和缓存淘汰
+ */
+public class PagedDataTest {
+
+    private static final int COUNT = 1000;
+    private static final int PAGE_SIZE = 20;
+
+    private final TaskQueue mBackground = new TaskQueue();
+    private final TaskQueue mMain = new TaskQueue();
+    private final StringBuilder mUpdates = new StringBuilder();
+    private final ListUpdateCallback mCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            mUpdates.append("+").append(position).append(",").append(count).append(" ");
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mUpdates.append("-").append(position).append(",").append(count).append(" ");
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mUpdates.append(">").append(fromPosition).append(",").append(toPosition).append(" ");
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            mUpdates.append("~").append(position).append(",").append(count).append(" ");
+        }
+    };
+
+    private CountingLoader mLoader;
+    private PagedData<String> mData;
+
+    @Before
+    public void setUp() throws Exception {
+        mLoader = new CountingLoader(COUNT);
+        mData = new PagedData<>(mLoader, PAGE_SIZE);
+    }
+
+    @Test
+    public void loadsCountThenOnlyBoundPages() throws Exception {
+        attach();
+        assertEquals(COUNT, mData.size());
+        assertEquals("+0,1000 ", mUpdates.toString());
+
+        assertNull(mData.get(45));
+        // 同一页重复请求只加载一次
+        assertNull(mData.get(46));
+        runAll();
+
+        assertEquals("item45", mData.get(45));
+        assertEquals(1, mLoader.pageLoads);
+        assertEquals("+0,1000 ~40,20 ", mUpdates.toString());
+    }
+
+    @Test
+    public void prefetchesNearPageEdges() throws Exception {
+        mData.setPrefetchDistance(5);
+        attach();
+        mData.get(50);
+        runAll();
+
+        mData.onBind(50);
+        runAll();
+        assertEquals(1, mLoader.pageLoads);
+
+        // 距离页尾不超过5条时加载下一页
+        mData.onBind(55);
+        runAll();
+        assertTrue(mData.isLoaded(60));
+        assertEquals(2, mLoader.pageLoads);
+
+        // 距离页头不超过5条时加载上一页
+        mData.onBind(42);
+        runAll();
+        assertTrue(mData.isLoaded(39));
+        assertEquals(3, mLoader.pageLoads);
+    }
+
+    @Test
+    public void lastPageIsShort() throws Exception {
+        mLoader = new CountingLoader(45);
+        mData = new PagedData<>(mLoader, PAGE_SIZE);
+        attach();
+        mData.get(44);
+        runAll();
+
+        assertEquals("item44", mData.get(44));
+        assertEquals("+0,45 ~40,5 ", mUpdates.toString());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPages() throws Exception {
+        mData.setMaxCacheSize(3 * PAGE_SIZE);
+        mData.setPrefetchDistance(0);
+        attach();
+        for (int page = 0; page < 3; page++) {
+            mData.get(page * PAGE_SIZE);
+            runAll();
+        }
+        // 最近用过第0页，最久没有用的是第1页
+        mData.get(0);
+        mData.get(3 * PAGE_SIZE);
+        runAll();
+
+        assertEquals(1, mData.getEvictionCount());
+        assertTrue(mData.isLoaded(0));
+        assertFalse(mData.isLoaded(PAGE_SIZE));
+        assertTrue(mData.isLoaded(3 * PAGE_SIZE));
+        assertEquals(3 * PAGE_SIZE, mData.getCacheSize());
+
+        // 被丢弃的页再次用到时重新加载
+        assertNull(mData.get(PAGE_SIZE));
+        runAll();
+        assertEquals("item20", mData.get(PAGE_SIZE));
+        assertEquals(5, mLoader.pageLoads);
+    }
+
+    @Test
+    public void scrollingThroughEverythingStaysWithinBudget() throws Exception {
+        mData.setMaxCacheSize(5 * PAGE_SIZE);
+        attach();
+        for (int i = 0; i < COUNT; i++) {
+            mData.onBind(i);
+            mData.get(i);
+            runAll();
+            assertTrue(mData.getCacheSize() <= 5 * PAGE_SIZE);
+        }
+        assertEquals(COUNT / PAGE_SIZE, mLoader.pageLoads);
+    }
+
+    @Test
+    public void dropsResultsAfterDetach() throws Exception {
+        attach();
+        mData.get(0);
+        mBackground.runAll();
+        mData.detach();
+        mMain.runAll();
+
+        assertEquals(0, mData.size());
+        assertEquals(0, mData.getLoadCount());
+        assertEquals("+0,1000 ", mUpdates.toString());
+    }
+
+    private void attach() {
+        mData.attach(mBackground, mMain, mCallback);
+        runAll();
+    }
+
+    private void runAll() {
+        while (!mBackground.isEmpty() || !mMain.isEmpty()) {
+            mBackground.runAll();
+            mMain.runAll();
+        }
+    }
+
+    private static class TaskQueue implements Executor {
+
+        private final ArrayList<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        boolean isEmpty() {
+            return mTasks.isEmpty();
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    private static class CountingLoader extends PageLoader<String> {
+
+        final int count;
+        int pageLoads;
+
+        CountingLoader(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int loadCount() {
+            return count;
+        }
+
+        @Override
+        public List<String> loadPage(int start, int count) {
+            pageLoads++;
+            ArrayList<String> page = new ArrayList<>(count);
+            for (int i = start; i < start + count; i++) {
+                page.add("item" + i);
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.custom.ui.common;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 检查视图类型、稳定ID和绑定分别交给了哪个ItemViewDelegate，以及没有注册时的错误信息
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecyclerViewAdapterBindTest {
+
+    @Test
+    public void payloadsAreForwardedToDelegate() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        StringBuilder binds = new StringBuilder();
+        DelegateAdapter adapter = new DelegateAdapter(context, Arrays.asList("a", "b"));
+        adapter.addItemViewDelegate(String.class, new RecordingDelegate<String>("text", android.R.layout.simple_list_item_1, binds));
+        adapter.addHeaderView(new View(context));
+
+        ViewHolder holder = adapter.createViewHolder(new FrameLayout(context), adapter.getItemViewType(1));
+        adapter.onBindViewHolder(holder, 1, Collections.<Object>emptyList());
+        adapter.onBindViewHolder(holder, 2, Arrays.<Object>asList("p1", "p2"));
+
+        assertEquals("text:a text:b[p1, p2] ", binds.toString());
+    }
+
+    @Test
+    public void payloadsFallBackToFullBindWithoutDelegates() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        final StringBuilder binds = new StringBuilder();
+        RecyclerViewAdapter<String> adapter = new RecyclerViewAdapter<String>(context, Arrays.asList("a", "b")) {
+            @Override
+            public void onBind(ViewHolder holder, String data) {
+                binds.append(data).append(" ");
+            }
+
+            @Override
+            public int getLayoutId(int viewType) {
+                return android.R.layout.simple_list_item_1;
+            }
+        };
+
+        ViewHolder holder = adapter.createViewHolder(new FrameLayout(context), adapter.getItemViewType(0));
+        adapter.onBindViewHolder(holder, 1, Arrays.<Object>asList("p"));
+
+        assertEquals("b ", binds.toString());
+    }
+
+    @Test
+    public void stableIdsAreDistinctForHeadersFootersAndPlaceholders() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        DelegateAdapter adapter = new DelegateAdapter(context, null);
+        adapter.addHeaderView(new View(context));
+        adapter.addHeaderView(new View(context));
+        adapter.addFooterView(new View(context));
+        adapter.setItemKeyExtractor(new ItemKeyExtractor<String>() {
+            @Override
+            public long getKey(String data) {
+                return Long.parseLong(data.substring("item".length()));
+            }
+        });
+        TaskQueue background = new TaskQueue();
+        adapter.setDiffExecutor(background);
+        adapter.setPagedData(new PagedData<>(new ItemLoader(10), 5));
+        // 取得总条数，分页还没有加载
+        background.runAll();
+        assertTrue(adapter.hasStableIds());
+        assertEquals(13, adapter.getItemCount());
+
+        assertIdsAreDistinct(adapter);
+        assertEquals(Long.MIN_VALUE, adapter.getItemId(0));
+        assertEquals(Long.MIN_VALUE + 1, adapter.getItemId(1));
+
+        // 加载完成后换成数据的键
+        background.runAll();
+        assertIdsAreDistinct(adapter);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, adapter.getItemId(i + 2));
+        }
+    }
+
+    @Test
+    public void delegatesResolveByClassAndSuperclass() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        StringBuilder binds = new StringBuilder();
+        ObjectAdapter adapter = new ObjectAdapter(context, Arrays.<Object>asList("a", 1, 2L, "b"));
+        adapter.addItemViewDelegate(String.class, new RecordingDelegate<String>("text", android.R.layout.simple_list_item_1, binds));
+        adapter.addItemViewDelegate(Number.class, new RecordingDelegate<Number>("number", android.R.layout.simple_list_item_2, binds));
+
+        // 视图类型按注册顺序从0开始，Integer和Long都使用Number的
+        assertEquals(0, adapter.getItemViewType(0));
+        assertEquals(1, adapter.getItemViewType(1));
+        assertEquals(1, adapter.getItemViewType(2));
+        assertEquals(0, adapter.getItemViewType(3));
+        assertEquals(android.R.layout.simple_list_item_1, adapter.getLayoutId(0));
+        assertEquals(android.R.layout.simple_list_item_2, adapter.getLayoutId(1));
+
+        bindAll(adapter);
+        assertEquals("text:a number:1 number:2 text:b ", binds.toString());
+    }
+
+    @Test
+    public void typeKeysAreCheckedBeforeClasses() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        StringBuilder binds = new StringBuilder();
+        ObjectAdapter adapter = new ObjectAdapter(context, Arrays.<Object>asList("a", "long text", 1));
+        adapter.addItemViewDelegate(Object.class, new RecordingDelegate<>("any", android.R.layout.simple_list_item_1, binds));
+        adapter.addItemViewDelegate(ObjectAdapter.KEY_LONG_TEXT, new RecordingDelegate<>("long", android.R.layout.simple_list_item_2, binds));
+        adapter.addItemViewDelegate(ObjectAdapter.KEY_SHORT_TEXT, new RecordingDelegate<>("short", android.R.layout.simple_list_item_1, binds));
+
+        // 键和类注册的视图类型共用一个连续的编号
+        assertEquals(2, adapter.getItemViewType(0));
+        assertEquals(1, adapter.getItemViewType(1));
+        assertEquals(0, adapter.getItemViewType(2));
+
+        bindAll(adapter);
+        assertEquals("short:a long:long text any:1 ", binds.toString());
+    }
+
+    @Test
+    public void unregisteredClassIsNamed() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        ObjectAdapter adapter = new ObjectAdapter(context, Arrays.<Object>asList("a", 1));
+        adapter.addItemViewDelegate(String.class, new RecordingDelegate<String>("text", android.R.layout.simple_list_item_1, new StringBuilder()));
+        adapter.addItemViewDelegate(ObjectAdapter.KEY_LONG_TEXT, new RecordingDelegate<>("long", android.R.layout.simple_list_item_2, new StringBuilder()));
+
+        try {
+            adapter.getItemViewType(1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("java.lang.Integer"));
+            assertTrue(e.getMessage(), e.getMessage().contains("key " + ObjectAdapter.KEY_OTHER));
+        }
+    }
+
+    @Test
+    public void missingOverrideAndDelegateIsNamed() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        DelegateAdapter adapter = new DelegateAdapter(context, Arrays.asList("a"));
+
+        try {
+            adapter.getLayoutId(adapter.getItemViewType(0));
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(DelegateAdapter.class.getName()));
+        }
+        try {
+            adapter.onBindViewHolder(new ViewHolder(context, new View(context)), 0);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("java.lang.String"));
+            assertTrue(e.getMessage(), e.getMessage().contains(DelegateAdapter.class.getName()));
+        }
+    }
+
+    private static void bindAll(RecyclerViewAdapter<?> adapter) {
+        FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+        for (int i = 0; i < adapter.getItemCount(); i++) {
+            ViewHolder holder = adapter.createViewHolder(parent, adapter.getItemViewType(i));
+            adapter.onBindViewHolder(holder, i);
+        }
+    }
+
+    private static void assertIdsAreDistinct(RecyclerViewAdapter<?> adapter) {
+        HashSet<Long> ids = new HashSet<>();
+        for (int i = 0; i < adapter.getItemCount(); i++) {
+            long id = adapter.getItemId(i);
+            assertTrue("no id at " + i, id != RecyclerView.NO_ID);
+            assertTrue("duplicate id at " + i, ids.add(id));
+        }
+    }
+
+    private static class RecordingDelegate<D> extends ItemViewDelegate<D> {
+
+        private final String mName;
+        private final int mLayoutId;
+        private final StringBuilder mBinds;
+
+        RecordingDelegate(String name, int layoutId, StringBuilder binds) {
+            this.mName = name;
+            this.mLayoutId = layoutId;
+            this.mBinds = binds;
+        }
+
+        @Override
+        public int getLayoutId() {
+            return mLayoutId;
+        }
+
+        @Override
+        public void onBind(ViewHolder holder, D data) {
+            mBinds.append(mName).append(":").append(data).append(" ");
+        }
+
+        @Override
+        public void onBind(ViewHolder holder, D data, List<Object> payloads) {
+            mBinds.append(mName).append(":").append(data).append(payloads).append(" ");
+        }
+    }
+
+    private static class ItemLoader extends PageLoader<String> {
+
+        private final int mCount;
+
+        ItemLoader(int count) {
+            this.mCount = count;
+        }
+
+        @Override
+        public int loadCount() {
+            return mCount;
+        }
+
+        @Override
+        public List<String> loadPage(int start, int count) {
+            ArrayList<String> page = new ArrayList<>(count);
+            for (int i = start; i < start + count; i++) {
+                page.add("item" + i);
+            }
+            return page;
+        }
+    }
+
+    private static class TaskQueue implements Executor {
+
+        private final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    private static class DelegateAdapter extends RecyclerViewAdapter<String> {
+
+        DelegateAdapter(Context context, List<String> data) {
+            super(context, data == null ? null : new ArrayList<>(data));
+        }
+    }
+
+    /**
+     * 字符串按长度分成两种键，其它数据的键没有注册
+     */
+    private static class ObjectAdapter extends RecyclerViewAdapter<Object> {
+
+        static final int KEY_SHORT_TEXT = 1;
+        static final int KEY_LONG_TEXT = 2;
+        static final int KEY_OTHER = 3;
+
+        ObjectAdapter(Context context, List<Object> data) {
+            super(context, new ArrayList<>(data));
+        }
+
+        @Override
+        protected int getItemTypeKey(Object data) {
+            if (data instanceof String) {
+                return ((String) data).length() > 1 ? KEY_LONG_TEXT : KEY_SHORT_TEXT;
+            }
+            return KEY_OTHER;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.custom.ui.common;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.custom.ui.textview.R;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * 点击事件只在创建ViewHolder时设置；共用{@link ViewHolderPool}时ViewHolder可能被另一个Adapter绑定，
+ * 绑定后的点击事件必须属于绑定它的Adapter
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecyclerViewAdapterClickTest {
+
+    @Test
+    public void listenersAreSetWhenHolderIsCreated() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        ClickAdapter adapter = new ClickAdapter(context);
+        adapter.setOnItemClickListener(new NoopClickListener());
+        adapter.setOnItemLongClickListener(new NoopLongClickListener());
+
+        ViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+        View itemView = holder.itemView;
+        View.OnClickListener clickListener = shadowOf(itemView).getOnClickListener();
+        View.OnLongClickListener longClickListener = shadowOf(itemView).getOnLongClickListener();
+
+        assertNotNull(clickListener);
+        assertNotNull(longClickListener);
+        assertSame(holder, itemView.getTag(R.id.tag_click));
+
+        // 绑定时不再重新设置
+        adapter.onBindViewHolder(holder, 0);
+        assertSame(clickListener, shadowOf(itemView).getOnClickListener());
+        assertSame(longClickListener, shadowOf(itemView).getOnLongClickListener());
+    }
+
+    @Test
+    public void holderMovedBetweenAdaptersUsesBindingAdapterListeners() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        FrameLayout parent = new FrameLayout(context);
+        // 两个Adapter各设置一次，点击事件的版本相同
+        ClickAdapter first = new ClickAdapter(context);
+        first.setOnItemClickListener(new NoopClickListener());
+        ClickAdapter second = new ClickAdapter(context);
+        second.setOnItemClickListener(new NoopClickListener());
+        View.OnClickListener firstListener = shadowOf(first.onCreateViewHolder(parent, 0).itemView).getOnClickListener();
+        View.OnClickListener secondListener = shadowOf(second.onCreateViewHolder(parent, 0).itemView).getOnClickListener();
+
+        ViewHolder holder = first.onCreateViewHolder(parent, 0);
+        assertSame(firstListener, shadowOf(holder.itemView).getOnClickListener());
+
+        second.onBindViewHolder(holder, 0);
+        assertSame(secondListener, shadowOf(holder.itemView).getOnClickListener());
+
+        first.onBindViewHolder(holder, 1);
+        assertSame(firstListener, shadowOf(holder.itemView).getOnClickListener());
+    }
+
+    @Test
+    public void listenersOfPreviousAdapterAreRemoved() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        FrameLayout parent = new FrameLayout(context);
+        ClickAdapter first = new ClickAdapter(context);
+        first.setOnItemLongClickListener(new NoopLongClickListener());
+        ClickAdapter second = new ClickAdapter(context);
+        second.setOnItemClickListener(new NoopClickListener());
+
+        ViewHolder holder = first.onCreateViewHolder(parent, 0);
+        second.onBindViewHolder(holder, 0);
+
+        assertNotNull(shadowOf(holder.itemView).getOnClickListener());
+        assertNull(shadowOf(holder.itemView).getOnLongClickListener());
+        assertFalse(holder.itemView.isLongClickable());
+    }
+
+    @Test
+    public void removedListenersAreClearedOnRewire() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        ClickAdapter adapter = new ClickAdapter(context);
+        adapter.setOnItemClickListener(new NoopClickListener());
+        adapter.setOnItemLongClickListener(new NoopLongClickListener());
+        adapter.setOnItemChildClickListener(new NoopChildClickListener(), android.R.id.text1);
+        ViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+        View child = holder.getView(android.R.id.text1);
+        assertNotNull(shadowOf(child).getOnClickListener());
+
+        adapter.setOnItemClickListener(null);
+        adapter.setOnItemLongClickListener(null);
+        adapter.setOnItemChildClickListener(null);
+        adapter.onBindViewHolder(holder, 0);
+
+        assertNull(shadowOf(holder.itemView).getOnClickListener());
+        assertFalse(holder.itemView.isClickable());
+        assertNull(shadowOf(holder.itemView).getOnLongClickListener());
+        assertFalse(holder.itemView.isLongClickable());
+        assertNull(shadowOf(child).getOnClickListener());
+    }
+
+    @Test
+    public void childClicksFollowChangedViewIds() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        ClickAdapter adapter = new ClickAdapter(context);
+        adapter.setOnItemChildClickListener(new NoopChildClickListener(), android.R.id.text1);
+        ViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+
+        adapter.setOnItemChildClickListener(new NoopChildClickListener(), android.R.id.text2);
+        adapter.onBindViewHolder(holder, 0);
+
+        assertNull(shadowOf(holder.getView(android.R.id.text1)).getOnClickListener());
+        assertNotNull(shadowOf(holder.getView(android.R.id.text2)).getOnClickListener());
+        assertNull(shadowOf(holder.itemView).getOnClickListener());
+    }
+
+    private static ArrayList<String> newData() {
+        ArrayList<String> data = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            data.add("item" + i);
+        }
+        return data;
+    }
+
+    private static class ClickAdapter extends RecyclerViewAdapter<String> {
+
+        ClickAdapter(Context context) {
+            super(context, newData());
+        }
+
+        @Override
+        public void onBind(ViewHolder holder, String data) {
+        }
+
+        @Override
+        public int getLayoutId(int viewType) {
+            return android.R.layout.simple_list_item_2;
+        }
+    }
+
+    private static class NoopClickListener implements RecyclerViewAdapter.OnItemClickListener<String> {
+
+        @Override
+        public void onItemClick(View view, String s, int position, long id) {
+        }
+    }
+
+    private static class NoopChildClickListener implements RecyclerViewAdapter.OnItemChildClickListener<String> {
+
+        @Override
+        public void onItemChildClick(View view, String s, int position) {
+        }
+    }
+
+    private static class NoopLongClickListener implements RecyclerViewAdapter.OnItemLongClickListener<String> {
+
+        @Override
+        public boolean onItemLongClick(View view, String s, int position, long id) {
+            return false;
+        }
+    }
+}
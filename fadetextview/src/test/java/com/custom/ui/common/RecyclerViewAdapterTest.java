@@ -0,0 +1,147 @@
+package com.custom.ui.common;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.view.View;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 绑定是滑动时最频繁的操作，稳定之后重复绑定不能再设置监听、Tag或者创建任何对象，开启耗时统计时也一样
+ */
+public class RecyclerViewAdapterTest {
+
+    private static final int DATA_SIZE = 100;
+    private static final int HOLDER_COUNT = 10;
+
+    @Test
+    public void steadyRebindDoesNotAllocate() throws Exception {
+        assertRebindDoesNotAllocate(false);
+    }
+
+    @Test
+    public void steadyRebindWithMetricsDoesNotAllocate() throws Exception {
+        assertRebindDoesNotAllocate(true);
+    }
+
+    @Test
+    public void metricsCountBindsAndSlowBinds() throws Exception {
+        Context context = new ContextWrapper(null);
+        CountingAdapter adapter = new CountingAdapter(context, newData());
+        final int[] slowBinds = new int[1];
+        adapter.setOnSlowBindListener(new RecyclerViewAdapter.OnSlowBindListener() {
+            @Override
+            public void onSlowBind(int viewType, int position, long bindNanos) {
+                slowBinds[0]++;
+            }
+        }, 1);
+        ViewHolder holder = new ViewHolder(context, new View(context));
+        for (int i = 0; i < 20; i++) {
+            adapter.bindDelayMillis = i % 10 == 0 ? 3 : 0;
+            adapter.onBindViewHolder(holder, i);
+        }
+
+        BindMetrics metrics = adapter.getBindMetrics().snapshot();
+        adapter.getBindMetrics().reset();
+
+        BindMetrics.TypeMetrics typeMetrics = metrics.getTypeMetricsFor(holder.getItemViewType());
+        assertEquals(1, metrics.getViewTypeCount());
+        assertEquals(20, typeMetrics.getBindCount());
+        assertEquals(2, typeMetrics.getSlowBindCount());
+        assertEquals(2, slowBinds[0]);
+        assertEquals(3000000, typeMetrics.getBindTimes().getMaxNanos());
+        assertEquals(0, adapter.getBindMetrics().getTypeMetricsFor(holder.getItemViewType()).getBindCount());
+    }
+
+    private void assertRebindDoesNotAllocate(boolean metrics) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Context context = new ContextWrapper(null);
+        CountingAdapter adapter = new CountingAdapter(context, newData());
+        adapter.setBindMetricsEnabled(metrics);
+        adapter.setOnItemClickListener(new RecyclerViewAdapter.OnItemClickListener<String>() {
+            @Override
+            public void onItemClick(View view, String s, int position, long id) {
+            }
+        });
+        adapter.setOnItemLongClickListener(new RecyclerViewAdapter.OnItemLongClickListener<String>() {
+            @Override
+            public boolean onItemLongClick(View view, String s, int position, long id) {
+                return false;
+            }
+        });
+        ViewHolder[] holders = new ViewHolder[HOLDER_COUNT];
+        for (int i = 0; i < holders.length; i++) {
+            holders[i] = new ViewHolder(context, new View(context));
+        }
+        // 预热，第一次绑定时设置点击事件
+        bindAll(adapter, holders, 100);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        bindAll(adapter, holders, 1000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(1100 * HOLDER_COUNT, adapter.bindCount);
+        assertTrue("allocated " + allocated + " bytes in " + 1000 * HOLDER_COUNT + " binds", allocated < 1024);
+    }
+
+    private static ArrayList<String> newData() {
+        ArrayList<String> data = new ArrayList<>();
+        for (int i = 0; i < DATA_SIZE; i++) {
+            data.add("item" + i);
+        }
+        return data;
+    }
+
+    private static void bindAll(CountingAdapter adapter, ViewHolder[] holders, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < holders.length; i++) {
+                adapter.onBindViewHolder(holders[i], (round + i) % DATA_SIZE);
+            }
+        }
+    }
+
+    private static class CountingAdapter extends RecyclerViewAdapter<String> {
+
+        int bindCount;
+        long bindDelayMillis;
+        long clockNanos;
+
+        CountingAdapter(Context context, ArrayList<String> data) {
+            super(context, data);
+        }
+
+        @Override
+        public void onBind(ViewHolder holder, String data) {
+            bindCount++;
+            // 不真的等待，只推进统计使用的时间
+            clockNanos += bindDelayMillis * 1000000;
+        }
+
+        @Override
+        long nanoTime() {
+            return clockNanos;
+        }
+
+        @Override
+        public int getLayoutId(int viewType) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.custom.ui.common;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 计算差异的线程换成手动执行的队列，检查setData和增删改发出的通知：
+ * 位置加上HeaderView的数量、过期的差异被丢弃、批量修改合并成最少的通知
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecyclerViewAdapterUpdateTest {
+
+    private static final int HEADER_COUNT = 1;
+
+    private final TaskQueue mBackground = new TaskQueue();
+    private final StringBuilder mUpdates = new StringBuilder();
+
+    private UpdateAdapter mAdapter;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        mAdapter = new UpdateAdapter(context, Arrays.asList("a", "b", "c"));
+        for (int i = 0; i < HEADER_COUNT; i++) {
+            mAdapter.addHeaderView(new View(context));
+        }
+        mAdapter.setDiffCallback(new FirstCharDiff());
+        mAdapter.setDiffExecutor(mBackground);
+        mAdapter.registerAdapterDataObserver(new RecordingObserver());
+    }
+
+    @Test
+    public void diffNotificationsAreOffsetByHeaders() throws Exception {
+        mAdapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        mAdapter.setData(Arrays.asList("a", "x", "b", "c"));
+        assertEquals("+2,1 ", takeUpdates());
+
+        mAdapter.setData(Arrays.asList("a", "x", "b2", "c"));
+        assertEquals("~3,1,b2 ", takeUpdates());
+        assertEquals(Arrays.asList("a", "x", "b2", "c"), mAdapter.getData());
+    }
+
+    @Test
+    public void olderDiffIsDiscardedWhenNewerDataLandsFirst() throws Exception {
+        mAdapter.setData(Arrays.asList("a", "b", "c", "d"));
+        mAdapter.setData(Arrays.asList("a", "c"));
+        assertTrue(mAdapter.isDataPending());
+
+        // 后提交的先算完
+        mBackground.run(1);
+        assertEquals("-2,1 ", takeUpdates());
+        mBackground.runAll();
+
+        assertEquals("", takeUpdates());
+        assertFalse(mAdapter.isDataPending());
+        assertEquals(Arrays.asList("a", "c"), mAdapter.getData());
+    }
+
+    @Test
+    public void staleDiffResultIsNotDispatched() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        mAdapter.setData(Arrays.asList("a", "b", "c", "d"));
+        // 结果已经发往UI线程，还没有生效时设置了新数据
+        mBackground.runAll();
+        mAdapter.setData(Arrays.asList("a", "c"));
+        mBackground.runAll();
+        assertEquals("", takeUpdates());
+
+        ShadowLooper.unPauseMainLooper();
+
+        assertEquals("-2,1 ", takeUpdates());
+        assertEquals(Arrays.asList("a", "c"), mAdapter.getData());
+    }
+
+    @Test
+    public void emptyListsAreHandledImmediately() throws Exception {
+        mAdapter.setData(new ArrayList<String>());
+        assertEquals("-1,3 ", takeUpdates());
+        assertFalse(mAdapter.isDataPending());
+
+        mAdapter.setData(Arrays.asList("d", "e"));
+        assertEquals("+1,2 ", takeUpdates());
+        assertFalse(mAdapter.isDataPending());
+        assertEquals(0, mBackground.size());
+        assertEquals(Arrays.asList("d", "e"), mAdapter.getData());
+    }
+
+    @Test
+    public void addDataIsFoldedIntoPendingDiff() throws Exception {
+        mAdapter.setData(Arrays.asList("a", "b", "c", "d"));
+        mAdapter.addData("e");
+
+        // 差异算完之前屏幕上还是旧数据
+        assertEquals("", takeUpdates());
+        assertEquals(Arrays.asList("a", "b", "c"), mAdapter.getData());
+
+        mBackground.runAll();
+
+        assertEquals("+4,2 ", takeUpdates());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), mAdapter.getData());
+    }
+
+    @Test
+    public void batchedAppendsAreOneInsert() throws Exception {
+        mAdapter.beginBatchUpdate();
+        for (int i = 0; i < 200; i++) {
+            mAdapter.addData("n" + i);
+        }
+        // 结束之前数据和通知都不生效
+        assertEquals("", takeUpdates());
+        assertEquals(3, mAdapter.getData().size());
+
+        mAdapter.endBatchUpdate();
+
+        assertEquals("+4,200 ", takeUpdates());
+        assertEquals(203, mAdapter.getData().size());
+    }
+
+    @Test
+    public void frameBatchingMergesAppendsUntilNextLoop() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        mAdapter.setFrameBatching(true);
+        for (int i = 0; i < 200; i++) {
+            mAdapter.addData("n" + i);
+        }
+        assertEquals("", takeUpdates());
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals("+4,200 ", takeUpdates());
+        assertEquals(203, mAdapter.getData().size());
+    }
+
+    @Test
+    public void batchedRangesAreMergedAndOffset() throws Exception {
+        mAdapter.setDiffCallback(null);
+        mAdapter.setData(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h"));
+        takeUpdates();
+
+        mAdapter.beginBatchUpdate();
+        mAdapter.removeData(2);
+        mAdapter.removeData(2);
+        mAdapter.moveData(0, 3);
+        mAdapter.beginBatchUpdate();
+        mAdapter.updateData(1, "x", "p");
+        mAdapter.updateData(2, "y", "p");
+        // 嵌套的批量修改在最外层结束时生效
+        mAdapter.endBatchUpdate();
+        assertEquals("", takeUpdates());
+        mAdapter.endBatchUpdate();
+
+        assertEquals("-3,2 >1,4 ~2,2,p ", takeUpdates());
+        assertEquals(Arrays.asList("b", "x", "y", "a", "g", "h"), mAdapter.getData());
+    }
+
+    @Test
+    public void batchDuringPendingDiffIsFoldedIntoDiff() throws Exception {
+        mAdapter.setData(Arrays.asList("a", "b", "c", "d"));
+
+        mAdapter.beginBatchUpdate();
+        mAdapter.addData("e");
+        mAdapter.removeData(0);
+        mAdapter.endBatchUpdate();
+        assertEquals("", takeUpdates());
+        assertTrue(mAdapter.isDataPending());
+
+        mBackground.runAll();
+
+        assertEquals("+4,2 -1,1 ", takeUpdates());
+        assertEquals(Arrays.asList("b", "c", "d", "e"), mAdapter.getData());
+    }
+
+    private String takeUpdates() {
+        String updates = mUpdates.toString();
+        mUpdates.setLength(0);
+        return updates;
+    }
+
+    /**
+     * 第一个字相同是同一条数据，整个字符串相同内容才相同，变化的部分是新的字符串
+     */
+    private static class FirstCharDiff extends DiffItemCallback<String> {
+
+        @Override
+        public boolean areItemsTheSame(String oldItem, String newItem) {
+            return oldItem.charAt(0) == newItem.charAt(0);
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public Object getChangePayload(String oldItem, String newItem) {
+            return newItem;
+        }
+    }
+
+    private class RecordingObserver extends RecyclerView.AdapterDataObserver {
+
+        @Override
+        public void onChanged() {
+            mUpdates.append("* ");
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mUpdates.append("+").append(positionStart).append(",").append(itemCount).append(" ");
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mUpdates.append("-").append(positionStart).append(",").append(itemCount).append(" ");
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            mUpdates.append(">").append(fromPosition).append(",").append(toPosition).append(" ");
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            mUpdates.append("~").append(positionStart).append(",").append(itemCount);
+            if (payload != null) {
+                mUpdates.append(",").append(payload);
+            }
+            mUpdates.append(" ");
+        }
+    }
+
+    private static class TaskQueue implements Executor {
+
+        private final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        int size() {
+            return mTasks.size();
+        }
+
+        void run(int index) {
+            mTasks.remove(index).run();
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    private static class UpdateAdapter extends RecyclerViewAdapter<String> {
+
+        UpdateAdapter(Context context, List<String> data) {
+            super(context, new ArrayList<>(data));
+        }
+
+        @Override
+        public void onBind(ViewHolder holder, String data) {
+        }
+
+        @Override
+        public int getLayoutId(int viewType) {
+            return android.R.layout.simple_list_item_1;
+        }
+    }
+}
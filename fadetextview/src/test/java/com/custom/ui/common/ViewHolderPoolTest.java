@@ -0,0 +1,140 @@
+package com.custom.ui.common;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 后台创建在真正的后台线程执行，UI线程的任务手动执行，检查提前创建、取用和UI线程创建的统计
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ViewHolderPoolTest {
+
+    private static final int VIEW_TYPE = 0;
+
+    private final BackgroundQueue mBackground = new BackgroundQueue();
+
+    private ViewHolderPool mPool;
+    private PoolAdapter mAdapter;
+    private RecyclerView mParent;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        ShadowLooper.pauseMainLooper();
+        mPool = new ViewHolderPool();
+        mAdapter = new PoolAdapter(context);
+        mAdapter.setDiffExecutor(mBackground);
+        mParent = new RecyclerView(context);
+        mPool.attach(mParent, mAdapter);
+    }
+
+    @Test
+    public void countsPreInflatedHitsAndUiInflations() throws Exception {
+        mPool.preInflate(mAdapter, mParent, VIEW_TYPE, 3);
+        mBackground.runAll();
+        // 创建好的ViewHolder在UI线程放进缓存
+        assertEquals(0, mPool.getPreInflatedCount(VIEW_TYPE));
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals(3, mPool.getPreInflatedCount(VIEW_TYPE));
+        assertEquals(3, mPool.getRecycledViewPool().getRecycledViewCount(VIEW_TYPE));
+        assertEquals(0, mPool.getInflateCount(VIEW_TYPE));
+
+        ViewHolder holder = (ViewHolder) mPool.getRecycledViewPool().getRecycledView(VIEW_TYPE);
+        assertNotNull(holder);
+        mAdapter.onBindViewHolder(holder, 0);
+        // 只有第一次绑定算作取用
+        mAdapter.onBindViewHolder(holder, 1);
+        assertEquals(1, mPool.getHitCount(VIEW_TYPE));
+
+        mAdapter.onBindViewHolder(mAdapter.createViewHolder(mParent, VIEW_TYPE), 0);
+        assertEquals(1, mPool.getInflateCount(VIEW_TYPE));
+        assertEquals(1, mPool.getHitCount(VIEW_TYPE));
+    }
+
+    @Test
+    public void clearDropsPendingPreInflation() throws Exception {
+        mPool.preInflate(mAdapter, mParent, VIEW_TYPE, 2);
+        mPool.clear();
+        mBackground.runAll();
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(0, mPool.getPreInflatedCount(VIEW_TYPE));
+
+        // 已经在后台创建好，还没有放进缓存
+        mPool.preInflate(mAdapter, mParent, VIEW_TYPE, 2);
+        mBackground.runAll();
+        mPool.clear();
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals(0, mPool.getPreInflatedCount(VIEW_TYPE));
+        assertEquals(0, mPool.getRecycledViewPool().getRecycledViewCount(VIEW_TYPE));
+
+        // 丢弃的不再占用缓存的名额
+        mPool.preInflate(mAdapter, mParent, VIEW_TYPE, 2);
+        mBackground.runAll();
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(2, mPool.getPreInflatedCount(VIEW_TYPE));
+        assertEquals(2, mPool.getRecycledViewPool().getRecycledViewCount(VIEW_TYPE));
+    }
+
+    /**
+     * 攒下提交的任务，在一个新的线程中依次执行
+     */
+    private static class BackgroundQueue implements Executor {
+
+        private final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() throws InterruptedException {
+            final List<Runnable> tasks = new ArrayList<>(mTasks);
+            mTasks.clear();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (Runnable task : tasks) {
+                        task.run();
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+    }
+
+    private static class PoolAdapter extends RecyclerViewAdapter<String> {
+
+        PoolAdapter(Context context) {
+            super(context, new ArrayList<String>());
+            for (int i = 0; i < 10; i++) {
+                getData().add("item" + i);
+            }
+        }
+
+        @Override
+        public void onBind(ViewHolder holder, String data) {
+        }
+
+        @Override
+        public int getLayoutId(int viewType) {
+            return android.R.layout.simple_list_item_1;
+        }
+    }
+}
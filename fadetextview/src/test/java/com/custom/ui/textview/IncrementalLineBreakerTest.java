@@ -0,0 +1,121 @@
+package com.custom.ui.textview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 超长文字逐个显示的分行测试，每个字宽度固定为1
+ */
+public class IncrementalLineBreakerTest {
+
+    private static final float WIDTH = 40;
+
+    /**
+     * 记录测量过的字数
+     */
+    private static class CountingMeasurer implements IncrementalLineBreaker.Measurer {
+
+        long measuredChars;
+
+        @Override
+        public int breakText(char[] text, int start, int end, float maxWidth) {
+            int count = Math.min(end - start, (int) maxWidth);
+            measuredChars += count;
+            return count;
+        }
+    }
+
+    @Test
+    public void breakAtSpaceAndNewline() throws Exception {
+        char[] text = "hello world\nfoo".toCharArray();
+        IncrementalLineBreaker breaker = new IncrementalLineBreaker(new CountingMeasurer());
+        breaker.reset(text, text.length, 8);
+
+        assertEquals(3, breaker.breakTo(text.length));
+        assertEquals(6, breaker.getLineEnd(0));
+        assertEquals(12, breaker.getLineEnd(1));
+        assertEquals(15, breaker.getLineEnd(2));
+    }
+
+    @Test
+    public void breakOnlyWhatIsRevealed() throws Exception {
+        char[] text = newText(10000);
+        IncrementalLineBreaker breaker = new IncrementalLineBreaker(new CountingMeasurer());
+        breaker.reset(text, text.length, WIDTH);
+
+        breaker.breakTo(1);
+        assertEquals(1, breaker.getLineCount());
+        breaker.breakTo(41);
+        assertEquals(2, breaker.getLineCount());
+    }
+
+    @Test
+    public void revealCostIsLinearInLength() throws Exception {
+        long small = revealAndCount(10000);
+        long large = revealAndCount(40000);
+
+        assertTrue("measured " + small + " chars for 10000", small <= 2 * 10000);
+        double ratio = (double) large / small;
+        assertTrue("cost ratio " + ratio, ratio > 3.5 && ratio < 4.5);
+    }
+
+    @Test
+    public void appendKeepsFinishedLines() throws Exception {
+        char[] full = "hello world foo".toCharArray();
+        CountingMeasurer measurer = new CountingMeasurer();
+        IncrementalLineBreaker breaker = new IncrementalLineBreaker(measurer);
+        breaker.reset(full, 9, 8);
+
+        assertEquals(2, breaker.breakTo(9));
+        assertEquals(6, breaker.getLineEnd(0));
+        long measuredBeforeAppend = measurer.measuredChars;
+
+        breaker.append(full, full.length);
+        assertEquals(3, breaker.breakTo(full.length));
+        assertEquals(6, breaker.getLineEnd(0));
+        assertEquals(12, breaker.getLineEnd(1));
+        assertEquals(15, breaker.getLineEnd(2));
+        // 第一行没有再测量，比重新整体分行的工作量少
+        CountingMeasurer fullMeasurer = new CountingMeasurer();
+        IncrementalLineBreaker fullBreaker = new IncrementalLineBreaker(fullMeasurer);
+        fullBreaker.reset(full, full.length, 8);
+        fullBreaker.breakTo(full.length);
+        assertEquals(fullMeasurer.measuredChars - 8, measurer.measuredChars - measuredBeforeAppend);
+    }
+
+    /**
+     * 按帧模拟一次完整的显示，返回分行时测量过的总字数
+     */
+    private static long revealAndCount(int length) {
+        char[] text = newText(length);
+        CountingMeasurer measurer = new CountingMeasurer();
+        IncrementalLineBreaker breaker = new IncrementalLineBreaker(measurer);
+        breaker.reset(text, length, WIDTH);
+
+        RevealProgress progress = new RevealProgress();
+        progress.start(length, 10, 0);
+        progress.setMaxStep(200);
+        long frameTime = 0;
+        while (!progress.isFinished()) {
+            frameTime += 16;
+            breaker.breakTo(progress.advance(frameTime));
+        }
+        return measurer.measuredChars;
+    }
+
+    private static char[] newText(int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            if (i % 97 == 96) {
+                text[i] = '\n';
+            } else if (i % 7 == 6) {
+                text[i] = ' ';
+            } else {
+                text[i] = (char) ('a' + i % 26);
+            }
+        }
+        return text;
+    }
+}
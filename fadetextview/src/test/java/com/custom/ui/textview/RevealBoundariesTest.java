@@ -0,0 +1,92 @@
+package com.custom.ui.textview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按字、单词、行划分显示单位的测试
+ */
+public class RevealBoundariesTest {
+
+    @Test
+    public void graphemeKeepsSurrogatePair() throws Exception {
+        String text = "a😀b";
+        assertArrayEquals(new int[]{1, 3, 4}, RevealBoundaries.forGraphemes(text));
+    }
+
+    @Test
+    public void wordIncludesTrailingSpace() throws Exception {
+        assertArrayEquals(new int[]{6, 12, 15}, RevealBoundaries.forWords("hello world foo"));
+    }
+
+    @Test
+    public void lineIncludesNewline() throws Exception {
+        assertArrayEquals(new int[]{4, 5, 8}, RevealBoundaries.forLines("abc\n\nde\n"));
+    }
+
+    @Test
+    public void progressStepsByWord() throws Exception {
+        String text = "hello world foo";
+        RevealProgress progress = new RevealProgress();
+        progress.start(text.length(), 10, 0);
+        progress.setBoundaries(RevealBoundaries.forWords(text));
+
+        assertEquals(0, progress.advance(50));
+        assertEquals(6, progress.advance(60));
+        assertEquals(6, progress.advance(110));
+        assertEquals(12, progress.advance(120));
+        // 单词中的字在整个单词出现时才开始淡入
+        assertEquals(120, progress.getRevealTime(7));
+        assertEquals(15, progress.advance(1000));
+    }
+
+    @Test
+    public void wordLongerThanBudgetStillAdvances() throws Exception {
+        String text = "abcdefghij k";
+        RevealProgress progress = new RevealProgress();
+        progress.start(text.length(), 1, 0);
+        progress.setBoundaries(RevealBoundaries.forWords(text));
+
+        assertEquals(11, progress.advance(100, 4));
+        assertEquals(11, progress.advance(100, 0));
+        assertEquals(12, progress.advance(116, 4));
+    }
+
+    @Test
+    public void wordRevealNeedsFewerUpdates() throws Exception {
+        String text = newWords(10000);
+        int charUpdates = countUpdates(text, null);
+        int wordUpdates = countUpdates(text, RevealBoundaries.forWords(text));
+        assertTrue("char " + charUpdates + " word " + wordUpdates, charUpdates >= 5 * wordUpdates);
+    }
+
+    /**
+     * 每毫秒一帧，统计显示进度变化的次数
+     */
+    private static int countUpdates(String text, int[] boundaries) {
+        RevealProgress progress = new RevealProgress();
+        progress.start(text.length(), 10, 0);
+        progress.setBoundaries(boundaries);
+        int updates = 0;
+        int index = 0;
+        for (long time = 0; !progress.isFinished(); time++) {
+            int next = progress.advance(time);
+            if (next != index) {
+                updates++;
+                index = next;
+            }
+        }
+        return updates;
+    }
+
+    private static String newWords(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(i % 7 == 6 ? ' ' : (char) ('a' + i % 26));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.custom.ui.textview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 逐帧显示的进度测试：追加文字后的速度和每帧最多显示的字数
+ */
+public class RevealProgressTest {
+
+    @Test
+    public void appendAfterCaughtUpKeepsPace() throws Exception {
+        RevealProgress progress = new RevealProgress();
+        progress.start(10, 10, 0);
+        assertEquals(10, progress.advance(1000));
+
+        progress.append(20, 5000);
+        assertEquals(10, progress.advance(5000));
+        assertEquals(12, progress.advance(5020));
+    }
+
+    @Test
+    public void maxStepCapsWorkPerFrame() throws Exception {
+        RevealProgress progress = new RevealProgress();
+        progress.start(100000, 1, 0);
+        progress.setMaxStep(200);
+
+        assertEquals(200, progress.advance(100000));
+        assertEquals(400, progress.advance(100016));
+    }
+}
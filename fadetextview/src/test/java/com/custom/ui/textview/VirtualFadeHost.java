@@ -0,0 +1,153 @@
+package com.custom.ui.textview;
+
+import java.util.ArrayList;
+
+/**
+ * 虚拟时间的{@link FadeScheduler.Host}，测试中代替Handler、Choreographer和线程池
+ * <p>
+ * 时间只在{@link #advanceBy}中推进，帧固定每16ms一次，延迟任务按时间顺序在同一线程执行，
+ * 后台任务在下一次推进时立即在当前线程执行，整个过程完全确定
+ */
+final class VirtualFadeHost implements FadeScheduler.Host {
+
+    static final long FRAME_INTERVAL = 16;
+
+    private long mNow;
+
+    /**
+     * 等待下一帧的调度器，为null表示没有请求下一帧
+     */
+    private FadeScheduler mFrameScheduler;
+
+    private final ArrayList<Runnable> mTasks = new ArrayList<>();
+    private final ArrayList<Long> mTaskTimes = new ArrayList<>();
+    private final ArrayList<Runnable> mBackgroundTasks = new ArrayList<>();
+
+    int frameCount;
+    int taskCount;
+    int backgroundTaskCount;
+
+    /**
+     * 安装到{@link FadeScheduler}，之前的状态全部清空
+     */
+    static VirtualFadeHost install() {
+        VirtualFadeHost host = new VirtualFadeHost();
+        FadeScheduler.setHost(host);
+        return host;
+    }
+
+    @Override
+    public long now() {
+        return mNow;
+    }
+
+    @Override
+    public void postFrame(FadeScheduler scheduler) {
+        mFrameScheduler = scheduler;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        long time = mNow + Math.max(0, delayMillis);
+        // 同一时间的任务按提交顺序执行
+        int i = mTaskTimes.size();
+        while (i > 0 && mTaskTimes.get(i - 1) > time) {
+            i--;
+        }
+        mTasks.add(i, task);
+        mTaskTimes.add(i, time);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        for (int i = mTasks.size() - 1; i >= 0; i--) {
+            if (mTasks.get(i) == task) {
+                mTasks.remove(i);
+                mTaskTimes.remove(i);
+            }
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        mBackgroundTasks.add(task);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mBackgroundTasks.remove(task);
+    }
+
+    /**
+     * 推进虚拟时间，按时间顺序执行期间到期的任务和帧
+     */
+    void advanceBy(long millis) {
+        long end = mNow + millis;
+        while (true) {
+            runBackgroundTasks();
+            long frameTime = mFrameScheduler != null ? (mNow / FRAME_INTERVAL + 1) * FRAME_INTERVAL : Long.MAX_VALUE;
+            long taskTime = mTasks.isEmpty() ? Long.MAX_VALUE : mTaskTimes.get(0);
+            long next = Math.min(frameTime, taskTime);
+            if (next > end) {
+                break;
+            }
+            mNow = next;
+            if (taskTime <= frameTime) {
+                Runnable task = mTasks.remove(0);
+                mTaskTimes.remove(0);
+                taskCount++;
+                task.run();
+            } else {
+                FadeScheduler scheduler = mFrameScheduler;
+                mFrameScheduler = null;
+                frameCount++;
+                scheduler.doFrame(mNow);
+            }
+        }
+        mNow = end;
+    }
+
+    /**
+     * 推进到下一个主线程任务并只执行这一个，它提交的后台任务留到之后执行
+     */
+    void runNextTask() {
+        mNow = mTaskTimes.remove(0);
+        taskCount++;
+        mTasks.remove(0).run();
+    }
+
+    /**
+     * 一直推进到没有任何帧和任务
+     *
+     * @param maxMillis 最多推进的时间，防止测试卡死
+     * @return 经过的虚拟时间
+     */
+    long runUntilIdle(long maxMillis) {
+        long start = mNow;
+        while (!isIdle() && mNow - start < maxMillis) {
+            advanceBy(FRAME_INTERVAL);
+        }
+        return mNow - start;
+    }
+
+    /**
+     * 是否有对象请求了下一帧
+     */
+    boolean isFrameRequested() {
+        return mFrameScheduler != null;
+    }
+
+    boolean isIdle() {
+        return mFrameScheduler == null && mTasks.isEmpty() && mBackgroundTasks.isEmpty();
+    }
+
+    /**
+     * 执行已提交的后台任务，不推进时间，它们提交到主线程的任务留到之后执行
+     */
+    void runBackgroundTasks() {
+        while (!mBackgroundTasks.isEmpty()) {
+            backgroundTaskCount++;
+            mBackgroundTasks.remove(0).run();
+        }
+    }
+}
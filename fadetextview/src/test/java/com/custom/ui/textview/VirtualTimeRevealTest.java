@@ -0,0 +1,780 @@
+package com.custom.ui.textview;
+
+import android.graphics.Canvas;
+import android.text.TextPaint;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在虚拟时间中驱动真实的{@link FadeTextView}，记录每次显示的工作量：setText、排版、重绘和内存分配的次数。
+ * 每次显示的工作量变多时在这里失败，而不是等到线上掉帧
+ */
+@RunWith(RobolectricTestRunner.class)
+public class VirtualTimeRevealTest {
+
+    private VirtualFadeHost mHost;
+    private FadeScheduler mScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        mHost = VirtualFadeHost.install();
+        mScheduler = FadeScheduler.getInstance();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        // 换成空的虚拟时间，不影响其它测试
+        FadeScheduler.setHost(new VirtualFadeHost());
+    }
+
+    @Test
+    public void frameRevealSetsTextAtMostOncePerFrame() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        CountingListener listener = new CountingListener();
+        view.setTextFade(new String(newText(1000)), listener);
+
+        long elapsed = mHost.runUntilIdle(60000);
+
+        assertEquals(1, listener.finishCount);
+        assertEquals(1000, view.getText().length());
+        // 每个字10ms，1000个字10秒显示完
+        assertEquals(10000, elapsed, VirtualFadeHost.FRAME_INTERVAL);
+        // 开始时清空一次，之后每帧最多一次
+        assertTrue("setText " + view.setTextCount, view.setTextCount <= mHost.frameCount + 1);
+        assertTrue("setText " + view.setTextCount, view.setTextCount <= 10000 / VirtualFadeHost.FRAME_INTERVAL + 2);
+    }
+
+    @Test
+    public void clipRevealLaysOutOnce() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_CLIP);
+        CountingListener listener = new CountingListener();
+        view.setTextFade(new String(newText(1000)), listener);
+
+        mHost.runUntilIdle(60000);
+
+        assertEquals(1, listener.finishCount);
+        assertEquals(1, view.setTextCount);
+        assertTrue("requestLayout " + view.requestLayoutCount, view.requestLayoutCount <= view.setTextCount);
+        // 之后每帧最多重绘一次
+        assertTrue("invalidate " + view.invalidateCount,
+                view.invalidateCount <= mHost.frameCount + view.setTextCount);
+    }
+
+    @Test
+    public void cachedLayoutReportsBaseline() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_CLIP);
+        view.setTextFade("hello world", null);
+
+        view.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.AT_MOST));
+
+        // 使用缓存时TextView自己没有排版，基线和行数仍然可以按基线对齐使用
+        assertTrue("baseline " + view.getBaseline(), view.getBaseline() >= view.getExtendedPaddingTop());
+        assertTrue(view.getLineCount() > 0);
+    }
+
+    @Test
+    public void cachedLayoutHonoursMaxWidth() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_CLIP);
+        view.setMaxWidth(100);
+        view.setTextFade(new String(newText(1000)), null);
+
+        view.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.AT_MOST));
+
+        assertTrue("width " + view.getMeasuredWidth(), view.getMeasuredWidth() <= 100);
+    }
+
+    @Test
+    public void longTextLayoutIsLinear() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_LONG_TEXT);
+        CountingPaint paint = new CountingPaint();
+        view.measuringPaint = paint;
+        CountingListener listener = new CountingListener();
+        view.setTextFade(new String(newText(100000)), listener);
+
+        mHost.runUntilIdle(20 * 60000);
+
+        assertEquals(1, listener.finishCount);
+        assertTrue("layout " + paint.measuredChars, paint.measuredChars <= 2 * 100000);
+        // 开始时清空一次，显示完后交给TextView一次
+        assertTrue("setText " + view.setTextCount, view.setTextCount <= 2);
+    }
+
+    @Test
+    public void wordUnitsCutUpdates() throws Exception {
+        String text = new String(newText(1000));
+        RecordingFadeTextView chars = newView(FadeTextView.REVEAL_MODE_FRAME);
+        chars.setTextFade(text, null);
+        mHost.runUntilIdle(60000);
+
+        RecordingFadeTextView words = newView(FadeTextView.REVEAL_MODE_FRAME);
+        words.setRevealUnit(FadeTextView.REVEAL_UNIT_WORD);
+        CountingListener listener = new CountingListener();
+        words.setTextFade(text, listener);
+        mHost.runUntilIdle(60000);
+
+        assertEquals(1, listener.finishCount);
+        assertEquals(1000, words.getText().length());
+        assertTrue("chars " + chars.setTextCount + " words " + words.setTextCount,
+                chars.setTextCount >= 2 * words.setTextCount);
+    }
+
+    @Test
+    public void frameBudgetIsSharedAndStaggered() throws Exception {
+        FadeTextView.setFadeFrameBudget(8);
+        FadeTextView.setFadeStaggerDelay(100);
+        ArrayList<RecordingFadeTextView> views = new ArrayList<>();
+        CountingListener listener = new CountingListener();
+        for (int i = 0; i < 10; i++) {
+            RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_CLIP);
+            view.setTextFade(new String(newText(500)), listener);
+            view.resetCounts();
+            views.add(view);
+        }
+
+        int maxFrameChars = 0;
+        int revealed = 0;
+        for (int frame = 0; frame < 10 * 60000 / VirtualFadeHost.FRAME_INTERVAL && !mHost.isIdle(); frame++) {
+            mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+            int total = 0;
+            for (int i = 0; i < views.size(); i++) {
+                total += views.get(i).getRevealedLength();
+            }
+            maxFrameChars = Math.max(maxFrameChars, total - revealed);
+            revealed = total;
+        }
+
+        assertEquals(10, listener.finishCount);
+        for (int i = 0; i < views.size(); i++) {
+            RecordingFadeTextView view = views.get(i);
+            assertEquals(500, view.getText().length());
+            // 依次开始的时间至少相隔100ms，第一个字在开始10ms后出现
+            assertTrue("first frame " + view.firstInvalidateTime, view.firstInvalidateTime >= i * 100 + 10);
+        }
+        assertTrue("max chars per frame " + maxFrameChars, maxFrameChars <= 8);
+    }
+
+    @Test
+    public void restartDoesNotReturnFrameBudget() throws Exception {
+        FadeTextView.setFadeFrameBudget(8);
+        RecordingFadeTextView restarted = newView(FadeTextView.REVEAL_MODE_CLIP);
+        restarted.setReturnPolicy(FadeTextView.RETURN_POLICY_RESTART);
+        RecordingFadeTextView behind = newView(FadeTextView.REVEAL_MODE_CLIP);
+        restarted.setTextFade(new String(newText(500)), null);
+        behind.setTextFade(new String(newText(500)), null);
+        mHost.advanceBy(500);
+        assertTrue(restarted.getRevealedLength() > 20);
+
+        // 预算不够时后面的View落后很多
+        restarted.visible = false;
+        mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+        FadeTextView.setFadeFrameBudget(1);
+        mHost.advanceBy(1000);
+        behind.visible = false;
+        mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+
+        // 重新可见，调度器轮流先回调，这样注册时同一帧中先重新开始，再追赶进度
+        FadeTextView.setFadeFrameBudget(8);
+        behind.visible = true;
+        behind.draw(new Canvas());
+        restarted.visible = true;
+        restarted.draw(new Canvas());
+        int before = behind.getRevealedLength();
+        mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+
+        assertTrue(restarted.getRevealedLength() < 8);
+        assertTrue("caught up " + (behind.getRevealedLength() - before), behind.getRevealedLength() - before <= 8);
+    }
+
+    @Test
+    public void queuedTextsChainWithoutEndEffect() throws Exception {
+        final RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setReplacePolicy(FadeTextView.REPLACE_POLICY_QUEUE);
+        final CountingListener listener = new CountingListener();
+        view.setTextFade("first", listener);
+        view.setTextFade("second", listener);
+        // 回调中开始的显示走同样的路径
+        view.setTextFade("third", new FadeTextView.FadeTextViewAnimListener() {
+            @Override
+            public void onAnimFinish() {
+                listener.onAnimFinish();
+                view.setTextFade("fourth", listener);
+            }
+        });
+
+        mHost.runUntilIdle(60000);
+
+        assertEquals(4, listener.finishCount);
+        assertEquals("fourth", view.getText().toString());
+    }
+
+    @Test
+    public void latestPolicyCancelsRunningReveal() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setReplacePolicy(FadeTextView.REPLACE_POLICY_LATEST);
+        CountingListener first = new CountingListener();
+        CountingListener second = new CountingListener();
+        view.setTextFade("first text", first);
+        mHost.advanceBy(50);
+
+        view.setTextFade("second", second);
+        mHost.runUntilIdle(60000);
+
+        // 取消的显示不回调结束
+        assertEquals(0, first.finishCount);
+        assertEquals(1, second.finishCount);
+        assertEquals("second", view.getText().toString());
+    }
+
+    @Test
+    public void skipToEndFinishesRunningRevealOnceBeforeNewText() throws Exception {
+        final RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setReplacePolicy(FadeTextView.REPLACE_POLICY_SKIP_TO_END);
+        final ArrayList<String> finished = new ArrayList<>();
+        view.setTextFade("first text", new FadeTextView.FadeTextViewAnimListener() {
+            @Override
+            public void onAnimFinish() {
+                finished.add(view.getText().toString());
+            }
+        });
+        mHost.advanceBy(50);
+
+        CountingListener second = new CountingListener();
+        view.setTextFade("second", second);
+        // 回调时第一段已经完整显示，新的文字还没有开始
+        assertEquals(1, finished.size());
+        assertEquals("first text", finished.get(0));
+
+        mHost.runUntilIdle(60000);
+        assertEquals(1, finished.size());
+        assertEquals(1, second.finishCount);
+        assertEquals("second", view.getText().toString());
+    }
+
+    @Test
+    public void queueOverflowDropsOldest() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setReplacePolicy(FadeTextView.REPLACE_POLICY_QUEUE);
+        view.setQueueCapacity(1);
+        CountingListener first = new CountingListener();
+        CountingListener dropped = new CountingListener();
+        CountingListener last = new CountingListener();
+        view.setTextFade("first", first);
+        view.setTextFade("dropped", dropped);
+        view.setTextFade("last", last);
+
+        mHost.runUntilIdle(60000);
+
+        assertEquals(1, first.finishCount);
+        assertEquals(0, dropped.finishCount);
+        assertEquals(1, last.finishCount);
+        assertEquals("last", view.getText().toString());
+    }
+
+    @Test
+    public void cancelMakesInFlightHandlerStepsStale() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_HANDLER);
+        CountingListener listener = new CountingListener();
+        view.setTextFade("aaaaaaaaaa", listener);
+        mHost.advanceBy(25);
+        assertEquals(2, view.getText().length());
+        // 下一步已经在后台线程执行完，显示第3个字的任务已经提交到主线程
+        mHost.runNextTask();
+        mHost.runBackgroundTasks();
+
+        view.cancelTextFade();
+        mHost.advanceBy(1000);
+
+        assertEquals(2, view.getText().length());
+        assertEquals(0, listener.finishCount);
+        assertTrue(mHost.isIdle());
+    }
+
+    @Test
+    public void alphaRevealFinishesAfterLastCharIsOpaque() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_ALPHA);
+        view.setFadeDuration(200);
+        TimedListener listener = new TimedListener();
+        view.setTextFade("0123456789", listener);
+
+        mHost.runUntilIdle(60000);
+
+        // 最后一个字在100ms时出现，再经过200ms才完全不透明
+        assertEquals(1, listener.finishTimes.size());
+        long finishTime = listener.finishTimes.get(0);
+        assertTrue("finished at " + finishTime, finishTime >= 300);
+        assertTrue("finished at " + finishTime, finishTime < 300 + 2 * VirtualFadeHost.FRAME_INTERVAL);
+    }
+
+    @Test
+    public void alphaJumpToEndIsOpaque() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_ALPHA);
+        view.setFadeDuration(200);
+        view.setReturnPolicy(FadeTextView.RETURN_POLICY_JUMP_TO_END);
+        TimedListener listener = new TimedListener();
+        view.setTextFade(new String(newText(100)), listener);
+        mHost.advanceBy(200);
+        view.visible = false;
+        mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+
+        view.visible = true;
+        view.draw(new Canvas());
+        long resumeTime = mScheduler.now();
+        mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+
+        // 跳到最后时所有字都已经完全淡入，不再等待淡入
+        assertEquals(1, listener.finishTimes.size());
+        assertTrue(listener.finishTimes.get(0) <= resumeTime + VirtualFadeHost.FRAME_INTERVAL);
+        assertEquals(100, view.getText().length());
+    }
+
+    @Test
+    public void endEffectAnimatorIsReusedAcrossReveals() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        ScaleEndEffect effect = new ScaleEndEffect();
+        view.setEndEffect(effect);
+        CountingListener listener = new CountingListener();
+
+        view.setTextFade("first", listener);
+        mHost.runUntilIdle(60000);
+        Object animator = effect.getAnimator();
+        assertNotNull(animator);
+        effect.end();
+        assertEquals(1, listener.finishCount);
+
+        view.setTextFade("second", listener);
+        mHost.runUntilIdle(60000);
+        effect.end();
+
+        assertEquals(2, listener.finishCount);
+        assertSame(animator, effect.getAnimator());
+        assertEquals(1f, view.getScaleX(), 0);
+    }
+
+    @Test
+    public void metricsReportCountsAndEndReason() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        final ArrayList<int[]> reports = new ArrayList<>();
+        view.setRevealMetricsListener(new FadeRevealMetrics.Listener() {
+            @Override
+            public void onRevealMetrics(FadeTextView view, FadeRevealMetrics metrics) {
+                // 回调之后会被重复使用，只保存数值
+                reports.add(new int[]{metrics.getEndReason(), metrics.getLength(),
+                        metrics.getFrameCount(), metrics.getUpdateCount(), metrics.getMaxCharsPerUpdate()});
+            }
+        });
+
+        view.setTextFade(new String(newText(100)), null);
+        mHost.runUntilIdle(60000);
+        view.setTextFade(new String(newText(100)), null);
+        mHost.advanceBy(100);
+        view.cancelTextFade();
+
+        assertEquals(2, reports.size());
+        int[] finished = reports.get(0);
+        assertEquals(FadeRevealMetrics.END_FINISHED, finished[0]);
+        assertEquals(100, finished[1]);
+        // 每个字10ms，每帧最多一次更新，一次更新两个字左右
+        assertTrue("frames " + finished[2], finished[2] >= 1000 / VirtualFadeHost.FRAME_INTERVAL);
+        assertTrue("updates " + finished[3], finished[3] > 0 && finished[3] <= finished[2]);
+        assertTrue("max chars " + finished[4], finished[4] <= 2);
+        assertEquals(FadeRevealMetrics.END_CANCELLED, reports.get(1)[0]);
+    }
+
+    @Test
+    public void revealedTextIsNotOverwrittenByNextReveal() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setReplacePolicy(FadeTextView.REPLACE_POLICY_LATEST);
+        view.setTextFade("aaaaaaaaaaaaaaaaaaaa", new CountingListener());
+        mHost.advanceBy(100);
+        CharSequence text = view.getText();
+        String shown = text.toString();
+        assertTrue(shown.length() > 0);
+
+        // 下一次显示复用字符数组时，之前拿到的文字不能跟着改变
+        view.setTextFade("bbbbbbbbbbbbbbbbbbbb", new CountingListener());
+        mHost.runUntilIdle(60000);
+
+        assertEquals("bbbbbbbbbbbbbbbbbbbb", view.getText().toString());
+        assertEquals(shown, text.toString());
+    }
+
+    @Test
+    public void revealedTextIsNotOverwrittenByStream() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setTextFade("aaaaaaaaaa", null);
+        mHost.runUntilIdle(60000);
+        CharSequence text = view.getText();
+
+        // 流式显示从头写入字符数组，之前拿到的文字不能跟着改变
+        view.appendTextFade("bbbbbbbbbb");
+        view.completeTextFade(null);
+        mHost.runUntilIdle(60000);
+
+        assertEquals("bbbbbbbbbb", view.getText().toString());
+        assertEquals("aaaaaaaaaa", text.toString());
+    }
+
+    @Test
+    public void handlerRevealShowsNewTextImmediately() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_HANDLER);
+        CountingListener listener = new CountingListener();
+        view.setTextFade("aaaaaaaaaa", listener);
+        mHost.runUntilIdle(60000);
+        assertEquals(1, listener.finishCount);
+
+        // 数组换成新的文字后，第一步还在后台线程，界面上不能还是旧文字的排版配着新的文字
+        view.setTextFade("bbbbbbbbbbbbbbbbbbbb", listener);
+        assertEquals(0, view.getText().length());
+
+        mHost.runUntilIdle(60000);
+        assertEquals(2, listener.finishCount);
+        assertEquals("bbbbbbbbbbbbbbbbbbbb", view.getText().toString());
+    }
+
+    @Test
+    public void appendDuringLastHandlerStepIsRevealed() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_HANDLER);
+        CountingListener listener = new CountingListener();
+        view.setTextFade("aaaaa", listener);
+        // 每个字10ms，最后一步已经在后台线程决定结束，结束的回调还没有执行
+        mHost.advanceBy(55);
+        assertEquals(5, view.getText().length());
+        assertEquals(0, listener.finishCount);
+
+        view.appendTextFade("bbbbb");
+        mHost.runUntilIdle(60000);
+
+        assertEquals(1, listener.finishCount);
+        assertEquals("aaaaabbbbb", view.getText().toString());
+    }
+
+    @Test
+    public void appendWhileBoundariesPendingFinishesOnce() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setRevealUnit(FadeTextView.REVEAL_UNIT_WORD);
+        CountingListener listener = new CountingListener();
+        view.setTextFade("hello world ", listener);
+        // 划分还没有完成，超过缓冲区大小的文字也只放在缓冲区中
+        String more = new String(newText(2000));
+        view.appendTextFade(more);
+        view.appendTextFade(" end");
+        // 划分完成前不注册帧回调
+        assertFalse(mHost.isFrameRequested());
+
+        mHost.runUntilIdle(60000);
+
+        assertEquals(1, listener.finishCount);
+        assertEquals("hello world " + more + " end", view.getText().toString());
+    }
+
+    @Test
+    public void saveRevealStateHasNoSideEffects() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_CLIP);
+        view.appendTextFade("abc");
+        view.appendTextFade("def");
+        view.resetCounts();
+
+        FadeRevealState state = view.saveRevealState();
+
+        assertEquals("abcdef", state.getText().toString());
+        assertEquals(0, state.getIndex());
+        // 缓冲区中的文字没有被提前提交
+        assertEquals(0, view.setTextCount);
+        assertEquals(0, view.getText().length());
+
+        view.completeTextFade(null);
+        mHost.runUntilIdle(60000);
+        assertEquals("abcdef", view.getText().toString());
+    }
+
+    @Test
+    public void finishedRevealIsNotSavedWithInstanceState() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.setTextFade("finished", null);
+        assertTrue(view.onSaveInstanceState() instanceof FadeTextView.SavedState);
+
+        mHost.runUntilIdle(60000);
+
+        assertFalse(view.onSaveInstanceState() instanceof FadeTextView.SavedState);
+        assertTrue(view.saveRevealState().isFinished());
+    }
+
+    @Test
+    public void detachedViewIsNotRegistered() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        view.attached = false;
+        CountingListener listener = new CountingListener();
+        view.setTextFade("detached", listener);
+
+        mHost.advanceBy(1000);
+        assertEquals(0, mHost.frameCount);
+        assertTrue(mHost.isIdle());
+
+        view.attach();
+        mHost.runUntilIdle(60000);
+        assertEquals(1, listener.finishCount);
+        assertEquals("detached", view.getText().toString());
+    }
+
+    @Test
+    public void detachStopsFramesUntilAttached() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        CountingListener listener = new CountingListener();
+        view.setTextFade(new String(newText(100)), listener);
+        mHost.advanceBy(200);
+        int revealed = view.getRevealedLength();
+
+        view.detach();
+        int frameCount = mHost.frameCount;
+        mHost.advanceBy(1000);
+        // 调度器不再持有离开窗口的View，最多还有一次已经请求的空帧
+        assertTrue(mHost.isIdle());
+        assertTrue("frames " + (mHost.frameCount - frameCount), mHost.frameCount - frameCount <= 1);
+
+        view.attach();
+        mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+        // 从暂停的位置继续
+        assertTrue(view.getRevealedLength() - revealed <= 2);
+        mHost.runUntilIdle(60000);
+        assertEquals(1, listener.finishCount);
+    }
+
+    @Test
+    public void hiddenViewWaitsForDraw() throws Exception {
+        RecordingFadeTextView view = newView(FadeTextView.REVEAL_MODE_FRAME);
+        CountingListener listener = new CountingListener();
+        view.setTextFade(new String(newText(100)), listener);
+        mHost.advanceBy(200);
+
+        view.visible = false;
+        mHost.advanceBy(VirtualFadeHost.FRAME_INTERVAL);
+        int revealed = view.getRevealedLength();
+        int frameCount = mHost.frameCount;
+        mHost.advanceBy(1000);
+        // 不可见时不再每帧检查
+        assertTrue(mHost.isIdle());
+        assertEquals(frameCount, mHost.frameCount);
+        assertEquals(revealed, view.getRevealedLength());
+
+        view.visible = true;
+        view.draw(new Canvas());
+        mHost.runUntilIdle(60000);
+        assertEquals(1, listener.finishCount);
+        assertEquals(100, view.getText().length());
+    }
+
+    @Test
+    public void delayedTasksRunInVirtualTime() throws Exception {
+        final StringBuilder log = new StringBuilder();
+        Runnable cancelled = new Runnable() {
+            @Override
+            public void run() {
+                log.append('x');
+            }
+        };
+        mScheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                log.append('b');
+            }
+        }, 20);
+        mScheduler.postDelayed(cancelled, 15);
+        mScheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                log.append('a');
+            }
+        });
+        mScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                log.append('0');
+            }
+        });
+        mScheduler.removeCallbacks(cancelled);
+
+        mHost.advanceBy(10);
+        assertEquals("0a", log.toString());
+        mHost.advanceBy(10);
+        assertEquals("0ab", log.toString());
+        assertEquals(20, mScheduler.now());
+    }
+
+    @Test
+    public void steadyFramesDoNotAllocate() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            newView(FadeTextView.REVEAL_MODE_CLIP).setTextFade(new String(newText(100000)), null);
+        }
+        // 预热
+        mHost.advanceBy(1000);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        mHost.advanceBy(10000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes in " + mHost.frameCount + " frames", allocated < 1024);
+    }
+
+    /**
+     * 已经布局、在屏幕上、没有结束效果的View，计数从这里开始
+     */
+    private RecordingFadeTextView newView(int revealMode) {
+        RecordingFadeTextView view = new RecordingFadeTextView();
+        view.setRevealMode(revealMode);
+        view.setEndEffect(null);
+        view.layout(0, 0, 480, 800);
+        view.resetCounts();
+        return view;
+    }
+
+    /**
+     * 记录TextView本身工作量的FadeTextView：每次setText都会重新排版全部可见的文字，
+     * 没有添加到真实的窗口，只把自己当作已添加到窗口并且在屏幕上
+     */
+    static class RecordingFadeTextView extends FadeTextView {
+
+        int setTextCount;
+        int requestLayoutCount;
+        int invalidateCount;
+        long firstInvalidateTime;
+
+        boolean attached = true;
+        boolean visible = true;
+
+        /**
+         * 不为null时代替TextView的画笔给长文字分行
+         */
+        TextPaint measuringPaint;
+
+        RecordingFadeTextView() {
+            super(RuntimeEnvironment.application);
+        }
+
+        void attach() {
+            attached = true;
+            onAttachedToWindow();
+            layout(0, 0, 480, 800);
+        }
+
+        void detach() {
+            onDetachedFromWindow();
+            attached = false;
+        }
+
+        void resetCounts() {
+            setTextCount = 0;
+            requestLayoutCount = 0;
+            invalidateCount = 0;
+            firstInvalidateTime = -1;
+        }
+
+        @Override
+        public boolean isAttachedToWindow() {
+            return attached;
+        }
+
+        @Override
+        boolean isRevealVisible() {
+            return visible;
+        }
+
+        @Override
+        public TextPaint getPaint() {
+            return measuringPaint != null ? measuringPaint : super.getPaint();
+        }
+
+        @Override
+        protected void onTextChanged(CharSequence text, int start, int lengthBefore, int lengthAfter) {
+            super.onTextChanged(text, start, lengthBefore, lengthAfter);
+            setTextCount++;
+        }
+
+        @Override
+        public void requestLayout() {
+            super.requestLayout();
+            requestLayoutCount++;
+        }
+
+        @Override
+        public void invalidate() {
+            super.invalidate();
+            if (invalidateCount++ == 0) {
+                firstInvalidateTime = FadeScheduler.getInstance().now();
+            }
+        }
+    }
+
+    /**
+     * 每个字8像素宽，记录分行时测量过的字数
+     */
+    static class CountingPaint extends TextPaint {
+
+        long measuredChars;
+
+        @Override
+        public int breakText(char[] text, int index, int count, float maxWidth, float[] measuredWidth) {
+            int fit = Math.min(count, (int) (maxWidth / 8));
+            measuredChars += fit;
+            return fit;
+        }
+    }
+
+    /**
+     * 记录每次结束时的虚拟时间
+     */
+    static class TimedListener implements FadeTextView.FadeTextViewAnimListener {
+
+        final ArrayList<Long> finishTimes = new ArrayList<>();
+
+        @Override
+        public void onAnimFinish() {
+            finishTimes.add(FadeScheduler.getInstance().now());
+        }
+    }
+
+    static class CountingListener implements FadeTextView.FadeTextViewAnimListener {
+
+        int finishCount;
+
+        @Override
+        public void onAnimFinish() {
+            finishCount++;
+        }
+    }
+
+    private static char[] newText(int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = i % 7 == 6 ? ' ' : (char) ('a' + i % 26);
+        }
+        return text;
+    }
+}